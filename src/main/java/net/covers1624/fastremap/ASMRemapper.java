@@ -1,41 +1,155 @@
 package net.covers1624.fastremap;
 
 import net.minecraftforge.srgutils.IMappingFile;
-import org.objectweb.asm.ClassReader;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.Remapper;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Thread-safe, may be used to remap many classes in parallel.
+ * <p>
  * Created by covers1624 on 17/9/21.
  */
 public final class ASMRemapper extends Remapper {
 
-    private static final String[] EMPTY = new String[0];
+    // Per memo. The kotlin compiler, ~25k classes, has fewer than 120k distinct keys across all four.
+    private static final int MEMO_SIZE = 1 << 16;
+
+    private final RemapInput input;
+    private final MappingLookup lookup;
+    private final Relocator relocator;
+    private final boolean classNamesOnly;
+    // Owners not in the mappings are never remapped, and are most lookups.
+    private final ClassNameFilter mappedClasses;
+    // Created on first lookup, most mapped classes are never referenced by the input.
+    private final Map<String, Map<String, String>> fieldCache = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> methodCache = new ConcurrentHashMap<>();
+    private final Map<String, String> annotationCache = new ConcurrentHashMap<>();
+    private volatile @Nullable ResourceRemapper resourceRemapper;
+
+    // The same descriptors and signatures repeat throughout a jar, avoid re-parsing them.
+    private final MemoCache descCache = new MemoCache(MEMO_SIZE);
+    private final MemoCache methodDescCache = new MemoCache(MEMO_SIZE);
+    private final MemoCache signatureCache = new MemoCache(MEMO_SIZE);
+    private final MemoCache typeSignatureCache = new MemoCache(MEMO_SIZE);
+
+    public ASMRemapper(RemapInput input, IMappingFile mappings) {
+        this(input, mappings, false);
+    }
+
+    /**
+     * @param input    The input.
+     * @param mappings The mappings.
+     * @param reversed If the mappings should be applied in reverse, mapping from their mapped names
+     *                 back to the original names. Cheaper than {@link IMappingFile#reverse()}, as the
+     *                 mapping model is not copied.
+     */
+    public ASMRemapper(RemapInput input, IMappingFile mappings, boolean reversed) {
+        this(input, MappingLookup.of(mappings, reversed), Relocator.NONE);
+    }
+
+    ASMRemapper(RemapInput input, MappingLookup lookup, Relocator relocator) {
+        this(input, lookup, relocator, false);
+    }
+
+    /**
+     * @param classNamesOnly If only class names should be remapped. Field and method names are returned as-is,
+     *                       without looking at the mappings or walking the class hierarchy.
+     */
+    ASMRemapper(RemapInput input, MappingLookup lookup, Relocator relocator, boolean classNamesOnly) {
+        this.input = input;
+        this.relocator = relocator;
+        this.lookup = lookup;
+        this.classNamesOnly = classNamesOnly;
+
+        List<String> classes = new ArrayList<>();
+        lookup.forEachClass((cName, mapped) -> classes.add(cName));
+        mappedClasses = new ClassNameFilter(classes);
+    }
+
+    public RemapInput getInput() {
+        return input;
+    }
+
+    /**
+     * @return The mappings, in their original direction. See {@link #isReversed()} for the direction
+     * they are applied in. Built on first use when the mappings were parsed by {@link MappingParser}.
+     */
+    public IMappingFile getMappings() {
+        return lookup.getMappings();
+    }
 
-    private final FastRemapper fastRemapper;
-    private final IMappingFile mappings;
-    private final Map<String, String[]> hierarchy = new HashMap<>();
-    private final Map<String, Map<String, String>> fieldCache = new HashMap<>();
-    private final Map<String, Map<String, String>> methodCache = new HashMap<>();
-    private final Map<String, String> annotationCache = new HashMap<>();
+    public boolean isReversed() {
+        return lookup.isReversed();
+    }
 
-    public ASMRemapper(FastRemapper fastRemapper, IMappingFile mappings) {
-        this.fastRemapper = fastRemapper;
-        this.mappings = mappings;
+    MappingLookup getLookup() {
+        return lookup;
+    }
+
+    public boolean isClassNamesOnly() {
+        return classNamesOnly;
+    }
 
-        for (IMappingFile.IClass clazz : mappings.getClasses()) {
-            fieldCache.put(clazz.getOriginal(), new HashMap<>());
-            methodCache.put(clazz.getOriginal(), new HashMap<>());
+    /**
+     * @return The {@link ResourceRemapper} for these mappings, built on first use.
+     */
+    ResourceRemapper getResourceRemapper() {
+        ResourceRemapper resourceRemapper = this.resourceRemapper;
+        if (resourceRemapper == null) {
+            synchronized (this) {
+                resourceRemapper = this.resourceRemapper;
+                if (resourceRemapper == null) {
+                    resourceRemapper = ResourceRemapper.of(lookup, relocator);
+                    this.resourceRemapper = resourceRemapper;
+                }
+            }
         }
+        return resourceRemapper;
     }
 
     @Override
     public String map(String internalName) {
-        IMappingFile.IClass clazz = mappings.getClass(internalName);
-        return clazz != null ? clazz.getMapped() : internalName;
+        String mapped = mappedClasses.mightContain(internalName) ? lookup.mapClass(internalName) : null;
+        if (mapped == null) {
+            mapped = internalName;
+        }
+        return relocator.isEmpty() ? mapped : relocator.relocate(mapped);
+    }
+
+    @Override
+    public String mapDesc(String descriptor) {
+        // Primitives are never remapped.
+        if (descriptor.length() == 1) return descriptor;
+        return descCache.get(descriptor, super::mapDesc);
+    }
+
+    @Override
+    public String mapMethodDesc(String methodDescriptor) {
+        if (methodDescriptor.equals("()V")) return methodDescriptor;
+        return methodDescCache.get(methodDescriptor, super::mapMethodDesc);
+    }
+
+    @Override
+    public String mapSignature(@Nullable String signature, boolean typeSignature) {
+        if (signature == null) return null;
+        if (typeSignature) {
+            return typeSignatureCache.get(signature, e -> super.mapSignature(e, true));
+        }
+        return signatureCache.get(signature, e -> super.mapSignature(e, false));
+    }
+
+    /**
+     * @return Hit statistics for the descriptor and signature memos, {@code null} if unused.
+     */
+    @Nullable
+    String formatMemoStats() {
+        return MemoCache.formatStats(descCache, methodDescCache, signatureCache, typeSignatureCache);
     }
 
     @Override
@@ -45,18 +159,15 @@ public final class ASMRemapper extends Remapper {
 
     @Override
     public String mapAnnotationAttributeName(String descriptor, String name) {
-        IMappingFile.IClass clazz = mappings.getClass(Type.getType(descriptor).getInternalName());
-        if (clazz == null) return name;
+        if (classNamesOnly) return name;
+
+        String owner = Type.getType(descriptor).getInternalName();
+        if (!mappedClasses.mightContain(owner)) return name;
 
         String mapped = annotationCache.get(descriptor + name);
         if (mapped != null) return mapped;
 
-        for (IMappingFile.IMethod method : clazz.getMethods()) {
-            if (method.getOriginal().equals(name)) {
-                mapped = method.getMapped();
-                break;
-            }
-        }
+        mapped = lookup.mapMethodName(owner, name);
         if (mapped != null) {
             annotationCache.put(descriptor + name, mapped);
             return mapped;
@@ -67,19 +178,18 @@ public final class ASMRemapper extends Remapper {
 
     @Override
     public String mapFieldName(String owner, String name, String descriptor) {
-        IMappingFile.IClass clazz = mappings.getClass(owner);
-        if (clazz == null) return name;
+        if (classNamesOnly || !mappedClasses.mightContain(owner)) return name;
 
-        // Hotwire quick lookup.
-        Map<String, String> cache = fieldCache.get(owner);
-        assert cache != null;
+        // Hotwire quick lookup, only classes in the mappings have a cache.
+        Map<String, String> cache = memberCache(fieldCache, owner);
+        if (cache == null) return name;
         String existing = cache.get(name + descriptor);
         if (existing != null) return existing;
 
-        String ret = name;
-        IMappingFile.IField field = clazz.getField(name);
-        if (field == null || !field.getDescriptor().equals(descriptor)) {
-            String[] parents = getDirectSuperTypes(owner);
+        String ret = lookup.mapField(owner, name, descriptor);
+        if (ret == null) {
+            ret = name;
+            String[] parents = input.getDirectSuperTypes(owner);
             for (String parent : parents) {
                 String mapped = mapFieldName(parent, name, descriptor);
                 if (!mapped.equals(name)) {
@@ -87,8 +197,6 @@ public final class ASMRemapper extends Remapper {
                     break;
                 }
             }
-        } else {
-            ret = field.getMapped();
         }
 
         cache.put(name + descriptor, ret);
@@ -97,19 +205,18 @@ public final class ASMRemapper extends Remapper {
 
     @Override
     public String mapMethodName(String owner, String name, String descriptor) {
-        IMappingFile.IClass clazz = mappings.getClass(owner);
-        if (clazz == null) return name;
+        if (classNamesOnly || !mappedClasses.mightContain(owner)) return name;
 
-        // Hotwire quick lookup.
-        Map<String, String> cache = methodCache.get(owner);
-        assert cache != null;
+        // Hotwire quick lookup, only classes in the mappings have a cache.
+        Map<String, String> cache = memberCache(methodCache, owner);
+        if (cache == null) return name;
         String existing = cache.get(name + descriptor);
         if (existing != null) return existing;
 
-        String ret = name;
-        IMappingFile.IMethod method = clazz.getMethod(name, descriptor);
-        if (method == null) {
-            String[] parents = getDirectSuperTypes(owner);
+        String ret = lookup.mapMethod(owner, name, descriptor);
+        if (ret == null) {
+            ret = name;
+            String[] parents = input.getDirectSuperTypes(owner);
             for (String parent : parents) {
                 String mapped = mapMethodName(parent, name, descriptor);
                 if (!mapped.equals(name)) {
@@ -117,43 +224,18 @@ public final class ASMRemapper extends Remapper {
                     break;
                 }
             }
-        } else {
-            ret = method.getMapped();
         }
 
         cache.put(name + descriptor, ret);
         return ret;
     }
 
-    private String[] getDirectSuperTypes(String cName) {
-        String[] directSuperTypes = hierarchy.get(cName);
-        if (directSuperTypes != null) return directSuperTypes;
-
-        byte[] bytes = fastRemapper.getClassBytes(cName);
-        directSuperTypes = bytes != null ? extractSupertypes(new ClassReader(bytes)) : EMPTY;
-
-        hierarchy.put(cName, directSuperTypes);
-        return directSuperTypes;
-    }
-
-    public void collectDirectSupertypes(ClassReader reader) {
-        String cName = reader.getClassName();
-        if (!hierarchy.containsKey(cName)) {
-            hierarchy.put(cName, extractSupertypes(reader));
-        }
-    }
-
-    private static String[] extractSupertypes(ClassReader reader) {
-        String superName = reader.getSuperName();
-        String[] interfaces = reader.getInterfaces();
+    private @Nullable Map<String, String> memberCache(Map<String, Map<String, String>> caches, String owner) {
+        Map<String, String> cache = caches.get(owner);
+        if (cache != null) return cache;
+        // Not cached for owners outside the mappings, the filter rejects almost all of those.
+        if (lookup.mapClass(owner) == null) return null;
 
-        // No super, just return interfaces.
-        if (superName == null) return interfaces;
-        // No interfaces, just return the super
-        if (interfaces.length == 0) return new String[] { superName };
-        String[] parents = new String[interfaces.length + 1];
-        parents[0] = superName;
-        System.arraycopy(interfaces, 0, parents, 1, interfaces.length);
-        return parents;
+        return caches.computeIfAbsent(owner, e -> new ConcurrentHashMap<>());
     }
 }
@@ -0,0 +1,63 @@
+package net.covers1624.fastremap;
+
+import java.util.Collection;
+
+/**
+ * A Bloom filter over class names.
+ * <p>
+ * Used to reject owners which can't be affected by the mappings, such as JDK and
+ * library types, without probing any maps. May return false positives, never false
+ * negatives. Sized at roughly 10 bits per name for a ~1% false positive rate.
+ * <p>
+ * Probes are derived from {@link String#hashCode}, which strings cache, so a
+ * lookup doesn't need to re-hash the name.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ClassNameFilter {
+
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int mask;
+
+    ClassNameFilter(Collection<String> names) {
+        // Next power of two, for masking instead of modulo.
+        long wanted = Math.max(64, (long) names.size() * 10);
+        int size = (int) Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+        bits = new long[size >>> 6];
+        mask = size - 1;
+        for (String name : names) {
+            int h1 = name.hashCode();
+            int h2 = secondHash(h1);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * @param name The class name.
+     * @return {@code false} if the name is definitely not in the filter.
+     */
+    public boolean mightContain(String name) {
+        int h1 = name.hashCode();
+        int h2 = secondHash(h1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    // Murmur3 finalizer, forced odd so successive probes cycle through every bit.
+    private static int secondHash(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
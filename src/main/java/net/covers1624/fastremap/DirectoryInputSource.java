@@ -0,0 +1,102 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An {@link InputSource} of every file in a directory, such as compiler output.
+ * <p>
+ * Entries are named relative to the directory and listed in sorted order. Files are
+ * only read when their entry is loaded, so they are read in parallel by the remap workers.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class DirectoryInputSource implements EntryReader.Source {
+
+    private final Path dir;
+
+    DirectoryInputSource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public EntryReader open() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(dir)) {
+            stream.filter(Files::isRegularFile)
+                    .map(e -> dir.relativize(e).toString().replace(dir.getFileSystem().getSeparator(), "/"))
+                    .sorted()
+                    .forEach(names::add);
+        }
+        return new Reader(dir, Collections.unmodifiableList(names));
+    }
+
+    private static final class Reader implements EntryReader {
+
+        private final Path dir;
+        private final List<String> names;
+
+        private Reader(Path dir, List<String> names) {
+            this.dir = dir.toAbsolutePath().normalize();
+            this.names = names;
+        }
+
+        @Override
+        public List<String> getNames() {
+            return names;
+        }
+
+        @Override
+        public byte @Nullable [] read(String name) throws IOException {
+            Path file = resolve(name);
+            if (file == null) return null;
+
+            try {
+                return Files.readAllBytes(file);
+            } catch (NoSuchFileException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public FileData.Content reread(String name, int size) {
+            Path file = resolve(name);
+            if (file == null) throw new IllegalArgumentException("Entry escapes the input directory: " + name);
+
+            return new FileData.Content() {
+                @Override
+                public byte[] get() {
+                    try {
+                        return Files.readAllBytes(file);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Failed to read " + name, ex);
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        // Null if the name escapes the directory.
+        private @Nullable Path resolve(String name) {
+            Path file = dir.resolve(name).normalize();
+            return file.startsWith(dir) ? file : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
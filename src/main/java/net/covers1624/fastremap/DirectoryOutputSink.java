@@ -0,0 +1,116 @@
+package net.covers1624.fastremap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@link OutputSink} which writes each entry as a file in a directory.
+ * <p>
+ * Files are written in parallel on a small pool. Files which already exist with identical
+ * content are left untouched, so tools watching the directory, such as hot-swap agents,
+ * only see classes which actually changed. Files which were not written are left alone.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class DirectoryOutputSink implements OutputSink {
+
+    private final Path dir;
+    private final ExecutorService executor;
+    // Bounds how many entries are queued, so a slow disk can't hold the whole output on the heap.
+    private final Semaphore queued;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    DirectoryOutputSink(Path dir, int threads) throws IOException {
+        this.dir = dir.toAbsolutePath().normalize();
+        Files.createDirectories(this.dir);
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "FastRemapper Directory Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        queued = new Semaphore(threads * 4);
+    }
+
+    @Override
+    public void write(String name, byte[] data) throws IOException {
+        checkFailure();
+        Path file = dir.resolve(name).normalize();
+        if (!file.startsWith(dir)) throw new IOException("Entry escapes the output directory: " + name);
+
+        if (name.endsWith("/")) {
+            Files.createDirectories(file);
+            return;
+        }
+
+        try {
+            queued.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", ex);
+        }
+        executor.execute(() -> {
+            try {
+                writeIfChanged(file, data);
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            } finally {
+                queued.release();
+            }
+        });
+    }
+
+    private void writeIfChanged(Path file, byte[] data) throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) == data.length && Arrays.equals(Files.readAllBytes(file), data)) {
+            unchanged.incrementAndGet();
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, data);
+        written.incrementAndGet();
+    }
+
+    /**
+     * @return The number of files written.
+     */
+    public int getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return The number of files left untouched, as their content was unchanged.
+     */
+    public int getUnchanged() {
+        return unchanged.get();
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable ex = failure.get();
+        if (ex == null) return;
+        if (ex instanceof IOException io) throw io;
+        throw new RuntimeException("Failed to write output.", ex);
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) throw new IOException("Timed out writing output.");
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", ex);
+        }
+        checkFailure();
+    }
+}
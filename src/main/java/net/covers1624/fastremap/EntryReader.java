@@ -0,0 +1,65 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Random access to the entries of an input, such as a zip or a directory.
+ * <p>
+ * Must be safe to read from concurrently.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+interface EntryReader extends Closeable {
+
+    /**
+     * @return The names of all entries, in order, without duplicates.
+     */
+    List<String> getNames();
+
+    /**
+     * Read an entry.
+     *
+     * @param name The name of the entry.
+     * @return The bytes, {@code null} if the entry does not exist.
+     */
+    byte @Nullable [] read(String name) throws IOException;
+
+    /**
+     * Get the content of an entry, without holding it on the heap.
+     * The entry is read again each time the content is required.
+     *
+     * @param name The name of the entry, which must exist.
+     * @param size The size of the entry.
+     * @return The content.
+     */
+    FileData.Content reread(String name, int size);
+
+    /**
+     * An {@link InputSource} which allows random access to its entries.
+     * <p>
+     * {@link FastRemapper} uses these to load entries on demand, instead of reading everything up front.
+     */
+    interface Source extends InputSource {
+
+        /**
+         * @return A new reader for this source. Must be closed.
+         */
+        EntryReader open() throws IOException;
+
+        @Override
+        default void read(EntryConsumer consumer) throws IOException {
+            try (EntryReader reader = open()) {
+                for (String name : reader.getNames()) {
+                    byte[] bytes = reader.read(name);
+                    if (bytes != null) {
+                        consumer.accept(name, bytes);
+                    }
+                }
+            }
+        }
+    }
+}
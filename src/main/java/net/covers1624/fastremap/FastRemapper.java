@@ -3,9 +3,13 @@ package net.covers1624.fastremap;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import joptsimple.ValueConversionException;
+import joptsimple.ValueConverter;
 import joptsimple.util.PathConverter;
 import net.covers1624.quack.collection.FastStream;
+import net.minecraftforge.srgutils.IMappingBuilder;
 import net.minecraftforge.srgutils.IMappingFile;
+import net.minecraftforge.srgutils.INamedMappingFile;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.objectweb.asm.ClassReader;
@@ -15,14 +19,17 @@ import org.objectweb.asm.Type;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import static java.util.List.of;
 
@@ -33,6 +40,21 @@ public final class FastRemapper {
 
     private static final String VERSION;
 
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    // Manifest attributes which name a class.
+    private static final String[] CLASS_ATTRIBUTES = { "Main-Class", "Premain-Class", "Agent-Class", "Launcher-Agent-Class" };
+
+    private static final ThreadFactory WORKER_FACTORY = new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FastRemapper Worker " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     static {
         String version = null;
         var pkg = FastRemapper.class.getPackage();
@@ -58,22 +80,50 @@ public final class FastRemapper {
                 .required()
                 .withValuesConvertedBy(new PathConverter());
 
+        OptionSpec<Integer> benchmarkOpt = parser.acceptsAll(of("benchmark"), "Benchmark mode. Runs the remap pass the given number of times, discarding the output.")
+                .withRequiredArg()
+                .ofType(Integer.class);
+        OptionSpec<Integer> warmupOpt = parser.acceptsAll(of("warmup"), "The number of warmup iterations to run before benchmarking.")
+                .availableIf(benchmarkOpt)
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(3);
+
+        OptionSpec<String> targetOpt = parser.acceptsAll(of("target"), "Remap into a namespace of the mappings, writing it to the given jar. May be specified multiple times, the input is only loaded once. Example: 'srg=out-srg.jar'")
+                .availableUnless(benchmarkOpt)
+                .withRequiredArg();
+        OptionSpec<String> fromOpt = parser.acceptsAll(of("from"), "The namespace of the input jar, when using '--target'. Defaults to the first namespace of the mappings.")
+                .availableIf(targetOpt)
+                .withRequiredArg();
+
         OptionSpec<Path> outputOpt = parser.acceptsAll(of("o", "output"), "Sets the output jar.")
+                .requiredUnless(benchmarkOpt, targetOpt)
                 .withRequiredArg()
-                .required()
                 .withValuesConvertedBy(new PathConverter());
 
-        OptionSpec<Path> mappingsOpt = parser.acceptsAll(of("m", "mappings"), "The mappings to use. [Proguard,SRG,TSRG,TSRGv2,Tiny,Tinyv2]")
+        OptionSpec<String> relocateOpt = parser.acceptsAll(of("relocate"), "Relocate classes by package prefix, applied after any mappings. May be specified multiple times. Example: 'com/google/=shaded/com/google/'")
+                .withRequiredArg();
+
+        OptionSpec<MappingChain.Link> mappingsOpt = parser.acceptsAll(of("m", "mappings"), "The mappings to use. [Proguard,SRG,TSRG,TSRGv2,Tiny,Tinyv2] May be specified multiple times to chain mappings, in order. Prefix with 'flip:' to flip an individual file.")
+                .requiredUnless(relocateOpt)
                 .withRequiredArg()
-                .required()
-                .withValuesConvertedBy(new PathConverter());
+                .withValuesConvertedBy(new LinkConverter());
 
         OptionSpec<Void> flipMappingsOpt = parser.acceptsAll(of("f", "flip"), "Flip the input mappings. (Useful for proguard logs)");
 
-        OptionSpec<String> excludeOpt = parser.acceptsAll(of("e", "exclude"), "Excludes a class or package from being remapped. Comma separated. Example: 'com.google.,org.apache.'")
+        OptionSpec<MappingChain.MissingPolicy> chainMissingOpt = parser.acceptsAll(of("chain-missing"), "What to do with entries missing from a later file when chaining mappings. [IDENTITY,DROP,ERROR]")
+                .withRequiredArg()
+                .ofType(MappingChain.MissingPolicy.class)
+                .defaultsTo(MappingChain.MissingPolicy.IDENTITY);
+
+        OptionSpec<String> excludeOpt = parser.acceptsAll(of("e", "exclude"), "Excludes a class or package from being remapped. Comma separated, supports globs. Example: 'com.google.,org.apache.,**.package-info'")
+                .withRequiredArg()
+                .withValuesSeparatedBy(",");
+        OptionSpec<String> stripOpt = parser.acceptsAll(of("s", "strip"), "Strip files from the output. Comma separated, supports globs. Example: 'com/google,org/apache/,some/file.txt,assets/**.png'")
                 .withRequiredArg()
                 .withValuesSeparatedBy(",");
-        OptionSpec<String> stripOpt = parser.acceptsAll(of("s", "strip"), "Strip files from the output. Comma separated. Example: 'com/google,org/apache/,some/file.txt'")
+
+        OptionSpec<String> remapResourcesOpt = parser.acceptsAll(of("remap-resources"), "Remap class names inside matching resources, and the Main-Class of the manifest. Comma separated, supports globs. Example: 'META-INF/services/,**.json'")
                 .withRequiredArg()
                 .withValuesSeparatedBy(",");
 
@@ -107,6 +157,34 @@ public final class FastRemapper {
         OptionSpec<Void> noFixDeprecated = parser.acceptsAll(of("no-fix-deprecated"), "Disable fixing of the Deprecated attribute.")
                 .availableIf(allFixesOpt);
 
+        OptionSpec<Long> maxHeapBufferOpt = parser.acceptsAll(of("max-heap-buffer"), "Limits how much of the input is kept on the heap, the rest is spilled to a temp file, or read again from a jar or directory input. Example: '256m'")
+                .withRequiredArg()
+                .withValuesConvertedBy(new SizeConverter());
+
+        OptionSpec<Void> pruneMappingsOpt = parser.acceptsAll(of("prune-mappings"), "Only keep field and method mappings for classes in the input and their supertypes. Saves memory when the input is the mapped jar itself.");
+
+        OptionSpec<Void> classNamesOnlyOpt = parser.acceptsAll(of("class-names-only"), "Only remap class names, in types, descriptors and signatures. Field and method names are left as they are. Much faster, for tools which only look at classes.");
+
+        OptionSpec<Void> verifyOpt = parser.acceptsAll(of("verify"), "After remapping, check that every field and method reference in the output resolves against the output and the JDK. Fails if any don't.");
+
+        OptionSpec<Path> deltaFromOpt = parser.acceptsAll(of("delta-from"), "A previous output jar. Only entries which changed since are written, along with a list of removed entries. Changes are detected by the SHA-256 hash list of the previous output.")
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter());
+
+        OptionSpec<Path> cacheOpt = parser.acceptsAll(of("cache"), "A directory to cache remapped jars in, shared between runs and processes. Identical jobs are copied from the cache.")
+                .withRequiredArg()
+                .withValuesConvertedBy(new PathConverter());
+
+        OptionSpec<Long> cacheSizeOpt = parser.acceptsAll(of("cache-size"), "The maximum size of the '--cache' directory, least recently used results are evicted past this. Example: '2g'")
+                .availableIf(cacheOpt)
+                .withRequiredArg()
+                .withValuesConvertedBy(new SizeConverter())
+                .defaultsTo(1024L * 1024 * 1024);
+
+        OptionSpec<Integer> threadsOpt = parser.acceptsAll(of("t", "threads"), "The number of threads to remap with. Defaults to the number of available processors.")
+                .withRequiredArg()
+                .ofType(Integer.class);
+
         OptionSpec<Void> verboseOpt = parser.acceptsAll(of("v", "verbose"), "Enables verbose logging.");
 
         OptionSet optSet = parser.parse(args);
@@ -121,56 +199,202 @@ public final class FastRemapper {
             parser.printHelpOn(System.err);
             return -1;
         }
-        if (!Files.isRegularFile(inputPath)) {
-            System.err.println("Expected '--input' path to be a file.");
+        boolean inputDir = Files.isDirectory(inputPath);
+        if (!inputDir && !Files.isRegularFile(inputPath)) {
+            System.err.println("Expected '--input' path to be a file or directory.");
             parser.printHelpOn(System.err);
             return -1;
         }
 
         Path outputPath = optSet.valueOf(outputOpt);
-        if (Files.exists(outputPath) && !Files.isRegularFile(outputPath)) {
-            System.err.println("Expected '--output' to not exist or be a file.");
+        boolean outputDir = false;
+        if (outputPath != null) {
+            // Directory output, if it already is one, or when remapping a directory to somewhere which isn't a jar.
+            String outputName = outputPath.getFileName().toString();
+            outputDir = Files.isDirectory(outputPath) || inputDir && Files.notExists(outputPath) && !outputName.endsWith(".jar") && !outputName.endsWith(".zip");
+            if (!outputDir && Files.exists(outputPath) && !Files.isRegularFile(outputPath)) {
+                System.err.println("Expected '--output' to not exist or be a file.");
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+        }
+        if ((inputDir || outputDir) && optSet.has(mcBundleOpt)) {
+            System.err.println("'--mc-bundle' requires jar input and output.");
             parser.printHelpOn(System.err);
             return -1;
         }
-        Files.deleteIfExists(outputPath);
 
-        Path mappingsPath = optSet.valueOf(mappingsOpt);
-        if (Files.notExists(mappingsPath)) {
-            System.err.println("Expected '--mappings' path to exist.");
+        Map<String, Path> targets = new LinkedHashMap<>();
+        for (String target : optSet.valuesOf(targetOpt)) {
+            int idx = target.indexOf('=');
+            if (idx <= 0 || idx == target.length() - 1) {
+                System.err.println("Expected '--target' to be in the form 'namespace=output.jar'. Got: " + target);
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            Path targetPath = Path.of(target.substring(idx + 1));
+            if (Files.exists(targetPath) && !Files.isRegularFile(targetPath)) {
+                System.err.println("Expected '--target' output to not exist or be a file. Got: " + targetPath);
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            targets.put(target.substring(0, idx), targetPath);
+        }
+        if (!targets.isEmpty() && (outputPath != null || optSet.has(mcBundleOpt) || optSet.has(flipMappingsOpt))) {
+            System.err.println("'--target' can't be used with '--output', '--mc-bundle' or '--flip'.");
             parser.printHelpOn(System.err);
             return -1;
         }
-        if (!Files.isRegularFile(mappingsPath)) {
-            System.err.println("Expected '--mappings' path to be a file.");
+
+        List<MappingChain.Link> mappingsChain = optSet.valuesOf(mappingsOpt);
+        for (MappingChain.Link link : mappingsChain) {
+            if (Files.notExists(link.path())) {
+                System.err.println("Expected '--mappings' path to exist. Got: " + link.path());
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            if (!Files.isRegularFile(link.path())) {
+                System.err.println("Expected '--mappings' path to be a file. Got: " + link.path());
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+        }
+        if (!targets.isEmpty() && (mappingsChain.size() != 1 || mappingsChain.get(0).flip())) {
+            System.err.println("'--target' requires a single, un-flipped, '--mappings' file.");
             parser.printHelpOn(System.err);
             return -1;
         }
 
-        FastRemapper remapper = new FastRemapper(
-                System.err,
-                optSet.valuesOf(excludeOpt),
-                optSet.valuesOf(stripOpt),
-                optSet.has(flipMappingsOpt),
-                optSet.has(verboseOpt),
-                optSet.has(mcBundleOpt),
-                isSet(optSet, fixLocalsOpt, allFixesOpt, noFixLocalsOpt),
-                isSet(optSet, fixSourceOpt, allFixesOpt, noFixSourceOpt),
-                isSet(optSet, fixParamAnnotations, allFixesOpt, noFixParamAnnotations),
-                isSet(optSet, fixStrippedCtors, allFixesOpt, noFixStrippedCtors),
-                isSet(optSet, fixCanonicalRecordCtorParamNames, allFixesOpt, noFixCanonicalRecordCtorParamNames),
-                isSet(optSet, fixDeprecated, allFixesOpt, noFixDeprecated)
-        );
+        Map<String, String> relocations = new LinkedHashMap<>();
+        for (String relocation : optSet.valuesOf(relocateOpt)) {
+            int idx = relocation.indexOf('=');
+            if (idx <= 0 || idx == relocation.length() - 1) {
+                System.err.println("Expected '--relocate' to be in the form 'from=to'. Got: " + relocation);
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            relocations.put(relocation.substring(0, idx), relocation.substring(idx + 1));
+        }
+        Path deltaFrom = optSet.valueOf(deltaFromOpt);
+        if (deltaFrom != null) {
+            if (!Files.isRegularFile(deltaFrom)) {
+                System.err.println("Expected '--delta-from' path to be a file. Got: " + deltaFrom);
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            if (!targets.isEmpty() || optSet.has(mcBundleOpt) || outputDir) {
+                System.err.println("'--delta-from' can't be used with '--target', '--mc-bundle' or a directory '--output'.");
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            if (outputPath != null && Files.exists(outputPath) && Files.isSameFile(deltaFrom, outputPath)) {
+                System.err.println("'--delta-from' can't be the same file as '--output', it would be replaced whilst being read.");
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+        }
+        if (optSet.has(verifyOpt) && (!targets.isEmpty() || optSet.has(mcBundleOpt) || deltaFrom != null || optSet.has(benchmarkOpt))) {
+            System.err.println("'--verify' can't be used with '--target', '--mc-bundle', '--delta-from' or '--benchmark'.");
+            parser.printHelpOn(System.err);
+            return -1;
+        }
+        if (optSet.has(classNamesOnlyOpt)
+                && (isSet(optSet, fixStrippedCtors, allFixesOpt, noFixStrippedCtors) || isSet(optSet, fixDeprecated, allFixesOpt, noFixDeprecated))) {
+            System.err.println("'--class-names-only' can't be used with '--fix-stripped-ctors' or '--fix-deprecated', use '--no-fix-stripped-ctors' and '--no-fix-deprecated' with '--all-fixers'.");
+            parser.printHelpOn(System.err);
+            return -1;
+        }
+        if (!targets.isEmpty() && (!relocations.isEmpty() || optSet.has(cacheOpt) || optSet.has(pruneMappingsOpt))) {
+            System.err.println("'--target' can't be used with '--relocate', '--cache' or '--prune-mappings'.");
+            parser.printHelpOn(System.err);
+            return -1;
+        }
+
+        Builder builder = builder()
+                .logger(System.err)
+                .relocate(relocations)
+                .excludes(optSet.valuesOf(excludeOpt))
+                .strips(optSet.valuesOf(stripOpt))
+                .remapResources(optSet.valuesOf(remapResourcesOpt))
+                .flipMappings(optSet.has(flipMappingsOpt))
+                .chainPolicy(optSet.valueOf(chainMissingOpt))
+                .pruneMappings(optSet.has(pruneMappingsOpt))
+                .classNamesOnly(optSet.has(classNamesOnlyOpt))
+                .verify(optSet.has(verifyOpt))
+                .verbose(optSet.has(verboseOpt))
+                .mcBundle(optSet.has(mcBundleOpt))
+                .fixLocals(isSet(optSet, fixLocalsOpt, allFixesOpt, noFixLocalsOpt))
+                .fixSource(isSet(optSet, fixSourceOpt, allFixesOpt, noFixSourceOpt))
+                .fixParamAnns(isSet(optSet, fixParamAnnotations, allFixesOpt, noFixParamAnnotations))
+                .fixStrippedCtors(isSet(optSet, fixStrippedCtors, allFixesOpt, noFixStrippedCtors))
+                .fixRecordCtorParamNames(isSet(optSet, fixCanonicalRecordCtorParamNames, allFixesOpt, noFixCanonicalRecordCtorParamNames))
+                .fixDeprecated(isSet(optSet, fixDeprecated, allFixesOpt, noFixDeprecated));
+
+        if (optSet.has(maxHeapBufferOpt)) {
+            builder.maxHeapBuffer(optSet.valueOf(maxHeapBufferOpt));
+        }
+        if (deltaFrom != null) {
+            builder.deltaFrom(deltaFrom);
+        }
+        if (optSet.has(cacheOpt)) {
+            builder.cache(optSet.valueOf(cacheOpt), optSet.valueOf(cacheSizeOpt));
+        }
+        if (optSet.has(threadsOpt)) {
+            if (optSet.valueOf(threadsOpt) < 1) {
+                System.err.println("Expected '--threads' to be at least 1.");
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            builder.threads(optSet.valueOf(threadsOpt));
+        }
+        FastRemapper remapper = builder.build();
+
+        if (optSet.has(benchmarkOpt)) {
+            if (optSet.valueOf(benchmarkOpt) < 1) {
+                System.err.println("Expected '--benchmark' to be at least 1.");
+                parser.printHelpOn(System.err);
+                return -1;
+            }
+            remapper.benchmark(inputPath, mappingsChain, optSet.valueOf(warmupOpt), optSet.valueOf(benchmarkOpt));
+            return 0;
+        }
+
+        if (!targets.isEmpty()) {
+            // Only once every option is validated, a bad command line must not touch existing outputs.
+            for (Path targetPath : targets.values()) {
+                Files.deleteIfExists(targetPath);
+            }
+            remapper.runTargets(inputPath, mappingsChain.get(0).path(), optSet.valueOf(fromOpt), targets);
+            return 0;
+        }
 
-        remapper.run(inputPath, outputPath, mappingsPath);
+        if (outputPath != null) {
+            if (outputDir) {
+                Files.createDirectories(outputPath);
+            } else {
+                Files.deleteIfExists(outputPath);
+            }
+        }
+        remapper.run(inputPath, outputPath, mappingsChain);
         return 0;
     }
 
     private final PrintStream logger;
 
-    private final List<String> excludes;
-    private final List<String> strips;
+    private final PrefixMatcher excludes;
+    private final PrefixMatcher strips;
+    private final PrefixMatcher resourceIncludes;
+    private final Map<String, String> relocations;
+    private final Relocator relocator;
+    private final @Nullable Path deltaFrom;
+    private final @Nullable ResultCache cache;
+    // Every option which affects the output, for cache keys.
+    private final String optionsKey;
     private final boolean flipMappings;
+    private final MappingChain.MissingPolicy chainPolicy;
+    private final boolean pruneMappings;
+    private final boolean classNamesOnly;
+    private final boolean verify;
     private final boolean verbose;
     private final boolean mcBundle;
     private final boolean fixLocals;
@@ -179,36 +403,490 @@ public final class FastRemapper {
     private final boolean fixStrippedCtors;
     private final boolean fixRecordCtorParamNames;
     private final boolean fixDeprecated;
+    private final long maxHeapBuffer;
+    private final int threads;
+    private final @Nullable IMappingFile mappings;
 
-    private final Map<String, FileData> inputZip = new LinkedHashMap<>();
-
-    private final Map<String, Integer> methodDepth = new HashMap<>();
-
-    private int remapCount;
-
+    /**
+     * Prefer {@link #builder()}.
+     */
     public FastRemapper(PrintStream logger,
             List<String> excludes, List<String> strips,
             boolean flipMappings, boolean verbose, boolean mcBundle,
             boolean fixLocals, boolean fixSource, boolean fixParamAnns, boolean fixStrippedCtors, boolean fixRecordCtorParamNames, boolean fixDeprecated) {
-        this.logger = logger;
-        this.excludes = new ArrayList<>(excludes);
-        this.strips = new ArrayList<>(strips);
-        this.flipMappings = flipMappings;
-        this.verbose = verbose;
-        this.mcBundle = mcBundle;
-        this.fixLocals = fixLocals;
-        this.fixSource = fixSource;
-        this.fixParamAnns = fixParamAnns;
-        this.fixStrippedCtors = fixStrippedCtors;
-        this.fixRecordCtorParamNames = fixRecordCtorParamNames;
-        this.fixDeprecated = fixDeprecated;
+        this(builder()
+                .logger(logger)
+                .excludes(excludes)
+                .strips(strips)
+                .flipMappings(flipMappings)
+                .verbose(verbose)
+                .mcBundle(mcBundle)
+                .fixLocals(fixLocals)
+                .fixSource(fixSource)
+                .fixParamAnns(fixParamAnns)
+                .fixStrippedCtors(fixStrippedCtors)
+                .fixRecordCtorParamNames(fixRecordCtorParamNames)
+                .fixDeprecated(fixDeprecated)
+        );
+    }
+
+    private FastRemapper(Builder builder) {
+        logger = builder.logger;
+        excludes = PrefixMatcher.compile(builder.excludes, true);
+        strips = PrefixMatcher.compile(builder.strips, false);
+        resourceIncludes = PrefixMatcher.compile(builder.resourceIncludes, false);
+        relocations = new LinkedHashMap<>(builder.relocations);
+        relocator = relocations.isEmpty() ? Relocator.NONE : new Relocator(relocations);
+        deltaFrom = builder.deltaFrom;
+        if (deltaFrom != null && builder.mcBundle) throw new IllegalStateException("Delta output is not supported for Minecraft bundles.");
+        if (builder.verify && (deltaFrom != null || builder.mcBundle)) throw new IllegalStateException("Verification is not supported for delta output or Minecraft bundles.");
+        // Both of these need member data, which isn't read.
+        if (builder.classNamesOnly && (builder.fixStrippedCtors || builder.fixDeprecated)) throw new IllegalStateException("Class names only mode does not support the stripped constructor or deprecated fixers.");
+        cache = builder.cacheDir != null ? new ResultCache(builder.cacheDir, builder.cacheSize) : null;
+        optionsKey = String.join(";",
+                "excludes=" + builder.excludes,
+                "strips=" + builder.strips,
+                "resources=" + builder.resourceIncludes,
+                "relocations=" + builder.relocations,
+                "flip=" + builder.flipMappings,
+                "chain=" + builder.chainPolicy,
+                "prune=" + builder.pruneMappings,
+                "classNamesOnly=" + builder.classNamesOnly,
+                // Not an output option, but cached results must have been verified if requested.
+                "verify=" + builder.verify,
+                "bundle=" + builder.mcBundle,
+                "fixers=" + builder.fixLocals + builder.fixSource + builder.fixParamAnns + builder.fixStrippedCtors + builder.fixRecordCtorParamNames + builder.fixDeprecated
+        );
+        flipMappings = builder.flipMappings;
+        chainPolicy = builder.chainPolicy;
+        pruneMappings = builder.pruneMappings;
+        classNamesOnly = builder.classNamesOnly;
+        verify = builder.verify;
+        verbose = builder.verbose;
+        mcBundle = builder.mcBundle;
+        fixLocals = builder.fixLocals;
+        fixSource = builder.fixSource;
+        fixParamAnns = builder.fixParamAnns;
+        fixStrippedCtors = builder.fixStrippedCtors;
+        fixRecordCtorParamNames = builder.fixRecordCtorParamNames;
+        fixDeprecated = builder.fixDeprecated;
+        maxHeapBuffer = builder.maxHeapBuffer;
+        threads = builder.threads;
+        mappings = builder.mappings;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Remap the given input, using the mappings provided to {@link Builder#mappings}.
+     * <p>
+     * This may be called any number of times, from any number of threads. Each call is independent.
+     *
+     * @param source The input.
+     * @param sink   The output. This is not closed.
+     * @return The number of classes remapped.
+     */
+    public int remap(InputSource source, OutputSink sink) throws IOException {
+        if (mappings == null) throw new IllegalStateException("No mappings provided to the builder.");
+        return remap(mappings, source, sink);
+    }
+
+    /**
+     * Remap the given input, using the given mappings.
+     * <p>
+     * This may be called any number of times, from any number of threads. Each call is independent.
+     *
+     * @param mappings The mappings.
+     * @param source   The input.
+     * @param sink     The output. This is not closed.
+     * @return The number of classes remapped.
+     */
+    public int remap(IMappingFile mappings, InputSource source, OutputSink sink) throws IOException {
+        try (RemapInput input = load(source)) {
+            return remap(newRemapper(input, MappingLookup.of(mappings, false)), sink);
+        }
+    }
+
+    /**
+     * Remap the given input into several targets at once.
+     * <p>
+     * The input is loaded and analysed once, the class hierarchy and any fixer
+     * pre-computation is shared by all targets. Targets are remapped concurrently.
+     *
+     * @param source  The input.
+     * @param targets The targets. Their sinks are not closed.
+     * @return The number of classes remapped for each target, in order.
+     */
+    public int[] remap(InputSource source, List<Target> targets) throws IOException {
+        try (RemapInput input = load(source)) {
+            return remapTargets(input, targets);
+        }
+    }
+
+    /**
+     * Remap the input of a prepared {@link ASMRemapper}.
+     * <p>
+     * The remapper, and its {@link RemapInput} can be re-used for repeated remaps of the same input.
+     *
+     * @param remapper The remapper, see {@link #load(InputSource)}.
+     * @param sink     The output. This is not closed.
+     * @return The number of classes remapped.
+     */
+    public int remap(ASMRemapper remapper, OutputSink sink) throws IOException {
+        return remapAll(remapper, sink);
+    }
+
+    /**
+     * Load the given input, spilling to disk as configured by {@link Builder#maxHeapBuffer}.
+     *
+     * @param source The input.
+     * @return The loaded input. Must be closed.
+     */
+    public RemapInput load(InputSource source) throws IOException {
+        return loadInput(source);
+    }
+
+    /**
+     * Open a read-only {@link FileSystem} view of the given input, as if it had been remapped.
+     * <p>
+     * Entry names are remapped up front, classes are only remapped when first read. Remapped
+     * classes are cached, up to {@code cacheSize} bytes.
+     * <p>
+     * Opening is cheap for inputs from {@link InputSource#ofZip(Path)} or {@link InputSource#ofZip(byte[])},
+     * as entries are only read from the zip as required.
+     *
+     * @param mappings  The mappings.
+     * @param source    The input.
+     * @param cacheSize The maximum number of bytes of remapped classes to keep cached.
+     * @return The file system. Closing it closes the input.
+     */
+    public FileSystem newFileSystem(IMappingFile mappings, InputSource source, long cacheSize) throws IOException {
+        RemapInput input = load(source);
+        try {
+            return new RemappedFileSystem(this, newRemapper(input, MappingLookup.of(mappings, false)), cacheSize);
+        } catch (Throwable ex) {
+            input.close();
+            throw ex;
+        }
     }
 
     public void run(Path inputPath, Path outputPath, Path mappingsPath) throws IOException {
+        run(inputPath, outputPath, List.of(new MappingChain.Link(mappingsPath, false)));
+    }
+
+    /**
+     * Remap the input jar with a chain of mappings, composed into a single set before remapping.
+     *
+     * @param inputPath  The input jar.
+     * @param outputPath The output jar.
+     * @param chain      The mappings, in chain order.
+     */
+    public void run(Path inputPath, Path outputPath, List<MappingChain.Link> chain) throws IOException {
+        printHeader(inputPath, outputPath, chain);
+        String cacheKey = null;
+        // Directories are not cached, they are already only rewritten where changed.
+        boolean cacheable = cache != null && Files.isRegularFile(inputPath) && !Files.isDirectory(outputPath);
+        if (cacheable) {
+            cacheKey = cacheKey(inputPath, chain);
+            if (cache.restore(cacheKey, outputPath)) {
+                logger.println("Restored output from cache.");
+                logger.println("Done.");
+                return;
+            }
+        }
+        runUncached(inputPath, outputPath, chain);
+        if (cacheable) {
+            try {
+                cache.store(cacheKey, outputPath);
+            } catch (IOException ex) {
+                // The output is fine, failing to cache it shouldn't fail the job.
+                logger.println("Failed to store output in cache: " + ex);
+            }
+        }
+    }
+
+    private static EntryReader.Source openInput(Path inputPath) {
+        return Files.isDirectory(inputPath) ? new DirectoryInputSource(inputPath) : new ZipInputSource(() -> ZipReader.open(inputPath));
+    }
+
+    private OutputSink openOutput(Path outputPath) throws IOException {
+        if (Files.isDirectory(outputPath)) {
+            if (deltaFrom != null) throw new IllegalStateException("Delta output requires a jar output.");
+            return new DirectoryOutputSink(outputPath, threads);
+        }
+        return deltaFrom != null ? OutputSink.toDeltaZip(outputPath, deltaFrom) : OutputSink.toZip(outputPath);
+    }
+
+    private String cacheKey(Path inputPath, List<MappingChain.Link> chain) throws IOException {
+        var phase = RemapEvents.Phase.start("Hash inputs");
+        ResultCache.KeyBuilder key = new ResultCache.KeyBuilder()
+                .add(VERSION)
+                .add(optionsKey)
+                .addFile(inputPath)
+                .add(deltaFrom != null);
+        if (deltaFrom != null) {
+            key.addFile(deltaFrom);
+        }
+        key.add(chain.size());
+        for (MappingChain.Link link : chain) {
+            key.add(link.flip()).addFile(link.path());
+        }
+        phase.commit();
+        return key.build();
+    }
+
+    private void runUncached(Path inputPath, Path outputPath, List<MappingChain.Link> chain) throws IOException {
+        MappingLookup mappings = loadMappings(chain);
+
+        if (!mcBundle) {
+            OutputSink sink = openOutput(outputPath);
+            if (sink instanceof ZipOutputSink zipSink && deltaFrom != null && !zipSink.hasBaselineHashes()) {
+                logger.println("Warning: '" + deltaFrom + "' has no hash list, comparing entries by CRC-32 and size. A changed entry may collide and be left out.");
+            }
+            try (sink; RemapInput input = loadInput(openInput(inputPath))) {
+                doRemapping(newRemapper(input, compactMappings(mappings, input)), sink);
+            }
+            if (sink instanceof ZipOutputSink zipSink && deltaFrom != null) {
+                logger.printf("Delta: skipped %d unchanged entries, %d removed.\n", zipSink.getUnchanged(), zipSink.getRemoved());
+            } else if (sink instanceof DirectoryOutputSink dirSink) {
+                logger.printf("Wrote %d files, %d unchanged.\n", dirSink.getWritten(), dirSink.getUnchanged());
+            }
+            if (verify) {
+                verifyOutput(outputPath);
+            }
+            logger.println("Done.");
+        } else {
+            try (ZipReader bundle = ZipReader.open(inputPath)) {
+                String[] segs = readBundleVersion(bundle);
+                try (RemapInput input = loadInput(bundleInput(bundle, segs))) {
+                    writeBundle(newRemapper(input, compactMappings(mappings, input)), bundle, segs, outputPath);
+                }
+            }
+            logger.println("Done.");
+        }
+    }
+
+    private void verifyOutput(Path outputPath) throws IOException {
+        logger.println("Verifying output..");
+        var phase = RemapEvents.Phase.start("Verify");
+        long start = System.nanoTime();
+        LinkageVerifier verifier = new LinkageVerifier();
+        LinkageVerifier.Report report;
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, WORKER_FACTORY) : null;
+        try (EntryReader reader = openInput(outputPath).open()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String name : reader.getNames()) {
+                // Multi-release versions would replace the base classes in the index.
+                if (!name.endsWith(".class") || name.startsWith("META-INF/")) continue;
+
+                if (executor == null) {
+                    indexClass(verifier, reader, name);
+                } else {
+                    futures.add(executor.submit(() -> {
+                        indexClass(verifier, reader, name);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+            report = verifier.verify(executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        phase.commit();
+
+        logger.printf("Verified %d classes in %s: %d references, %d unresolved, %d skipped (outside the output and the JDK).\n",
+                report.classes(), formatDuration(System.nanoTime() - start), report.references(), report.unresolved().size(), report.skipped());
+        logProblems("Unresolved", report.unresolved());
+        logProblems("Bad max stack/locals", report.badMaxs());
+        if (!report.isOk()) {
+            throw new RuntimeException("Verification failed: " + report.unresolved().size() + " unresolved references, " + report.badMaxs().size() + " methods with bad max stack/locals.");
+        }
+    }
+
+    private static void indexClass(LinkageVerifier verifier, EntryReader reader, String name) throws IOException {
+        byte[] bytes = reader.read(name);
+        if (bytes != null) {
+            verifier.index(bytes);
+        }
+    }
+
+    private void logProblems(String kind, List<String> problems) {
+        int shown = verbose ? problems.size() : Math.min(problems.size(), 20);
+        for (int i = 0; i < shown; i++) {
+            logger.println(" " + kind + ": " + problems.get(i));
+        }
+        if (shown < problems.size()) {
+            logger.printf(" ... and %d more, use --verbose to list all.\n", problems.size() - shown);
+        }
+    }
+
+    /**
+     * Remap the input into several namespaces of a single mappings file.
+     *
+     * @param inputPath    The input jar.
+     * @param mappingsPath The mappings, may contain any number of namespaces.
+     * @param from         The namespace of the input, {@code null} for the first namespace of the mappings.
+     * @param targets      The output jar for each namespace.
+     */
+    public void runTargets(Path inputPath, Path mappingsPath, @Nullable String from, Map<String, Path> targets) throws IOException {
+        printHeader(inputPath, null, List.of(new MappingChain.Link(mappingsPath, false)));
+        logger.println("Loading mappings..");
+        var phase = RemapEvents.Phase.start("Load mappings");
+        INamedMappingFile named;
+        try (InputStream is = Files.newInputStream(mappingsPath)) {
+            named = INamedMappingFile.load(is);
+        }
+        if (from == null) {
+            from = named.getNames().get(0);
+        }
+        if (!named.getNames().contains(from)) throw new RuntimeException("Mappings do not contain namespace " + from + ". Available: " + named.getNames());
+
+        Map<String, IMappingFile> mappings = new LinkedHashMap<>();
+        for (String namespace : targets.keySet()) {
+            if (!named.getNames().contains(namespace)) throw new RuntimeException("Mappings do not contain namespace " + namespace + ". Available: " + named.getNames());
+            mappings.put(namespace, named.getMap(from, namespace));
+        }
+        phase.commit();
+
+        List<OutputSink> sinks = new ArrayList<>();
+        try (RemapInput input = loadInput(openInput(inputPath))) {
+            List<Target> remapTargets = new ArrayList<>();
+            for (var entry : targets.entrySet()) {
+                logger.println(" Target  : " + entry.getKey() + " -> " + entry.getValue().toAbsolutePath());
+                OutputSink sink = OutputSink.toZip(entry.getValue());
+                sinks.add(sink);
+                remapTargets.add(new Target(mappings.get(entry.getKey()), sink));
+            }
+
+            logger.println("Remapping...");
+            phase = RemapEvents.Phase.start("Remap");
+            long start = System.nanoTime();
+            int[] counts = remapTargets(input, remapTargets);
+            long end = System.nanoTime();
+            phase.commit();
+            logger.printf("Remapped %d classes into %d targets in %s\n", counts.length > 0 ? counts[0] : 0, counts.length, formatDuration(end - start));
+        } finally {
+            for (OutputSink sink : sinks) {
+                sink.close();
+            }
+        }
+        logger.println("Done.");
+    }
+
+    private int[] remapTargets(RemapInput input, List<Target> targets) throws IOException {
+        ExecutorService workers = threads > 1 ? Executors.newFixedThreadPool(threads, WORKER_FACTORY) : null;
+        // Each target gets its own writer thread, all feeding from the same worker pool.
+        ExecutorService writers = Executors.newFixedThreadPool(Math.max(1, targets.size()), WORKER_FACTORY);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (Target target : targets) {
+                ASMRemapper remapper = newRemapper(input, MappingLookup.of(target.mappings(), false));
+                futures.add(writers.submit(() -> remapAll(remapper, target.sink(), workers)));
+            }
+            int[] counts = new int[futures.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = await(futures.get(i));
+            }
+            return counts;
+        } finally {
+            writers.shutdownNow();
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    private void writeBundle(ASMRemapper remapper, ZipReader bundle, String[] segs, Path outputPath) throws IOException {
+        logger.println("Writing bundle jar..");
+        var phase = RemapEvents.Phase.start("Write bundle");
+        String jarName = "META-INF/versions/" + segs[2];
+        ZipReader.Entry listEntry = null;
+        try (ZipWriter zout = new ZipWriter(new BufferedOutputStream(Files.newOutputStream(outputPath)))) {
+            for (ZipReader.Entry entry : bundle.getEntries()) {
+                if (entry.isDirectory()) continue;
+
+                if (entry.name().equals("META-INF/versions.list")) {
+                    // Written last, once we know the hash of the remapped jar.
+                    listEntry = entry;
+                } else if (entry.name().equals(jarName)) {
+                    // Hash the remapped jar as it's written, it never needs to exist in memory as a whole.
+                    MessageDigest digest = Hashing.newSha256();
+                    try (OutputSink sink = OutputSink.toZip(new DigestOutputStream(zout.putNextEntry(jarName, entry.dosTime()), digest))) {
+                        doRemapping(remapper, sink);
+                    }
+                    segs[0] = Hashing.toHex(digest.digest());
+                } else {
+                    zout.copyRaw(bundle, entry);
+                }
+            }
+            assert listEntry != null;
+            zout.putEntry(listEntry.name(), String.join("\t", segs).getBytes(StandardCharsets.UTF_8), listEntry.dosTime());
+        }
+        phase.commit();
+    }
+
+    /**
+     * Load the input and mappings once, then repeatedly run the remap pass, discarding the output.
+     * <p>
+     * The same {@link ASMRemapper} is used for every iteration, so this measures warm steady-state performance.
+     *
+     * @param inputPath    The input jar.
+     * @param chain        The mappings, in chain order.
+     * @param warmup       The number of un-measured warmup iterations.
+     * @param iterations   The number of measured iterations.
+     */
+    public void benchmark(Path inputPath, List<MappingChain.Link> chain, int warmup, int iterations) throws IOException {
+        printHeader(inputPath, null, chain);
+        MappingLookup mappings = loadMappings(chain);
+        RemapInput input;
+        if (!mcBundle) {
+            input = loadInput(openInput(inputPath));
+        } else {
+            try (ZipReader bundle = ZipReader.open(inputPath)) {
+                input = loadInput(bundleInput(bundle, readBundleVersion(bundle)));
+            }
+        }
+
+        // One pool for all iterations, so the per-thread allocation counters of its workers survive between samples.
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, WORKER_FACTORY) : null;
+        try (input) {
+            ASMRemapper remapper = newRemapper(input, compactMappings(mappings, input));
+            new RemapBenchmark(logger, warmup, iterations)
+                    .run(out -> {
+                        try (OutputSink sink = OutputSink.toZip(out)) {
+                            return remapAll(remapper, sink, executor);
+                        }
+                    });
+            logMemoStats(remapper);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void printHeader(Path inputPath, @Nullable Path outputPath, List<MappingChain.Link> chain) {
         logger.println("Fast Remapper " + VERSION + ".");
         logger.println(" Input   : " + inputPath.toAbsolutePath());
-        logger.println(" Output  : " + outputPath.toAbsolutePath());
-        logger.println(" Mappings: " + mappingsPath.toAbsolutePath());
+        if (outputPath != null) {
+            logger.println(" Output  : " + outputPath.toAbsolutePath());
+        }
+        for (MappingChain.Link link : chain) {
+            logger.println(" Mappings: " + link.path().toAbsolutePath() + (link.flip() ? " (flipped)" : ""));
+        }
+        for (Map.Entry<String, String> entry : relocations.entrySet()) {
+            logger.println(" Relocate: " + entry.getKey() + " -> " + entry.getValue());
+        }
+        if (classNamesOnly) {
+            logger.println(" Members : not remapped, class names only.");
+        }
         logger.println();
         logger.println("Fixers enabled:");
         if (fixLocals) logger.println(" - Local Variable Table fixer.");
@@ -218,114 +896,323 @@ public final class FastRemapper {
         if (fixRecordCtorParamNames) logger.println(" - Canonical record constructor parameter renaming.");
         if (fixDeprecated) logger.println(" - Deprecated attribute fixer. (ProGuard)");
         logger.println();
+    }
+
+    private ASMRemapper newRemapper(RemapInput input, MappingLookup mappings) {
+        return new ASMRemapper(input, mappings, relocator, classNamesOnly);
+    }
 
+    private MappingLookup loadMappings(List<MappingChain.Link> chain) throws IOException {
         logger.println("Loading mappings..");
 
-        ASMRemapper remapper;
-        try (InputStream is = Files.newInputStream(mappingsPath)) {
-            IMappingFile mappings = IMappingFile.load(is);
-            if (flipMappings) {
-                mappings = mappings.reverse();
+        var phase = RemapEvents.Phase.start("Load mappings");
+        MappingLookup mappings;
+        if (chain.isEmpty()) {
+            // Relocation only.
+            mappings = MappingLookup.of(IMappingBuilder.create("left", "right").build().getMap("left", "right"), false);
+        } else if (chain.size() == 1) {
+            // Flipping is done by the remapper's lookups, rather than copying the mappings with reverse().
+            MappingChain.Link link = chain.get(0);
+            boolean reversed = link.flip() != flipMappings;
+            ParsedMappings parsed = parseMappings(link.path());
+            if (parsed != null) {
+                mappings = parsed.lookup(reversed);
+            } else {
+                mappings = MappingLookup.of(new MappingChain.Link(link.path(), false).load(), reversed);
             }
-            remapper = new ASMRemapper(this, mappings);
+        } else {
+            mappings = MappingLookup.of(MappingChain.load(chain, chainPolicy), flipMappings);
         }
+        phase.commit();
+        return mappings;
+    }
 
-        if (!mcBundle) {
-            loadInput(Files.newInputStream(inputPath));
-            byte[] remappedZip = doRemapping(remapper);
+    // With --prune-mappings, copies the loaded mappings into a compact store of only the members which may be
+    // looked up, so the loaded model can be collected. Otherwise the loaded mappings are used as-is, as
+    // copying them would build all their lookup tables up front.
+    private MappingLookup compactMappings(MappingLookup mappings, RemapInput input) throws IOException {
+        if (!pruneMappings) return mappings;
+
+        var phase = RemapEvents.Phase.start("Compact mappings");
+        // Members are never looked up with --class-names-only, and finding reachable classes would need the hierarchy.
+        Set<String> keepMembers = classNamesOnly ? Set.of() : reachableClasses(input);
+        MappingStore store = mappings.toStore(keepMembers);
+        phase.commit();
+        if (verbose) {
+            logger.printf("Mapping store: %d classes, %d fields, %d methods, %d strings.\n",
+                    store.getClassCount(), store.getFieldCount(), store.getMethodCount(), store.getStringCount());
+        }
+        return store;
+    }
 
-            logger.println("Writing zip..");
-            Files.write(outputPath, remappedZip);
-            logger.println("Done.");
-        } else {
-            String[] segs;
-            logger.println("Opening bundle jar..");
-            try (ZipFile zFile = new ZipFile(inputPath.toFile())) {
-                ZipEntry listEntry = zFile.getEntry("META-INF/versions.list");
-                if (listEntry == null) throw new RuntimeException("Jar is not a Minecraft server bundle.");
-
-                String line = new String(zFile.getInputStream(listEntry).readAllBytes(), StandardCharsets.UTF_8).trim();
-                segs = line.split("\t");
-                if (segs.length != 3) throw new RuntimeException("More than one version?");
-
-                ZipEntry serverJar = zFile.getEntry("META-INF/versions/" + segs[2]);
-                if (serverJar == null) throw new RuntimeException("Server jar does not exists in bundle?");
-
-                loadInput(zFile.getInputStream(serverJar));
-            }
-
-            byte[] output = doRemapping(remapper);
-            segs[0] = Hashing.sha256(output);
-
-            logger.println("Writing bundle har..");
-            try (ZipInputStream zin = new ZipInputStream(Files.newInputStream(inputPath));
-                 ZipOutputStream zout = new ZipOutputStream(Files.newOutputStream(outputPath))) {
-                ZipEntry entry;
-                while ((entry = zin.getNextEntry()) != null) {
-                    if (entry.isDirectory()) continue;
-                    zout.putNextEntry(new ZipEntry(entry.getName()));
-                    if (entry.getName().equals("META-INF/versions.list")) {
-                        zout.write(String.join("\t", segs).getBytes(StandardCharsets.UTF_8));
-                    } else if (entry.getName().equals("META-INF/versions/" + segs[2])) {
-                        zout.write(output);
-                    } else {
-                        zin.transferTo(zout);
-                    }
-                    zout.closeEntry();
+    // The classes in the input, and all their supertypes.
+    private Set<String> reachableClasses(RemapInput input) throws IOException {
+        Set<String> classes = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        for (String name : input.getNames()) {
+            if (!name.endsWith(".class")) continue;
+
+            String cName = name.substring(0, name.length() - 6);
+            if (classes.add(cName)) {
+                queue.add(cName);
+            }
+        }
+        // Parse the input's classes in parallel, the walk below then only parses supertypes outside the input.
+        if (threads > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, WORKER_FACTORY);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (String cName : queue) {
+                    futures.add(executor.submit(() -> input.getDirectSuperTypes(cName)));
+                }
+                for (Future<?> future : futures) {
+                    await(future);
                 }
+            } finally {
+                executor.shutdownNow();
             }
-            logger.println("Done.");
         }
+        while (!queue.isEmpty()) {
+            for (String parent : input.getDirectSuperTypes(queue.poll())) {
+                if (classes.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return classes;
     }
 
-    private void loadInput(InputStream is) throws IOException {
-        logger.println("Loading input zip..");
-        try (ZipInputStream zin = new ZipInputStream(is)) {
-            ZipEntry entry;
-            ByteArrayOutputStream obuf = new ByteArrayOutputStream(32 * 1024 * 1024); // 32k
-            while ((entry = zin.getNextEntry()) != null) {
-                zin.transferTo(obuf);
-                inputZip.put(entry.getName(), FileData.create(entry.getName(), obuf.toByteArray()));
-                obuf.reset();
+    // Common formats are parsed straight into lookup tables, null for anything else.
+    private @Nullable ParsedMappings parseMappings(Path path) throws IOException {
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, WORKER_FACTORY) : null;
+        try {
+            ParsedMappings parsed = MappingParser.load(path, executor, threads);
+            if (verbose) {
+                logger.println(parsed != null ? "Parsed " + parsed.getClassCount() + " classes." : "Format not supported by the fast parser, using SrgUtils.");
+            }
+            return parsed;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
     }
 
-    private byte[] doRemapping(ASMRemapper remapper) throws IOException {
+    private String[] readBundleVersion(ZipReader bundle) throws IOException {
+        logger.println("Opening bundle jar..");
+        ZipReader.Entry listEntry = bundle.getEntry("META-INF/versions.list");
+        if (listEntry == null) throw new RuntimeException("Jar is not a Minecraft server bundle.");
+
+        String line = new String(bundle.read(listEntry), StandardCharsets.UTF_8).trim();
+        String[] segs = line.split("\t");
+        if (segs.length != 3) throw new RuntimeException("More than one version?");
+        return segs;
+    }
+
+    private static InputSource bundleInput(ZipReader bundle, String[] segs) throws IOException {
+        ZipReader.Entry serverJar = bundle.getEntry("META-INF/versions/" + segs[2]);
+        if (serverJar == null) throw new RuntimeException("Server jar does not exists in bundle?");
+
+        // Held compressed in memory, so the remapper can seek within it.
+        return InputSource.ofZip(bundle.read(serverJar));
+    }
+
+    private RemapInput loadInput(InputSource source) throws IOException {
+        if (source instanceof EntryReader.Source randomAccess) {
+            // Entries are loaded on demand by the remap workers, so loading overlaps with remapping.
+            return RemapInput.open(logger, randomAccess.open(), maxHeapBuffer, classNamesOnly);
+        }
+
+        logger.println("Loading input..");
+        var phase = RemapEvents.Phase.start("Load input");
+        RemapInput input = new RemapInput(logger, maxHeapBuffer > 0 ? new SpillStore(maxHeapBuffer) : null, classNamesOnly);
+        try {
+            if (threads == 1) {
+                source.read(input::addEntry);
+            } else {
+                readParallel(source, input);
+            }
+        } catch (Throwable ex) {
+            input.close();
+            throw ex;
+        }
+        SpillStore spillStore = input.getSpillStore();
+        if (spillStore != null && spillStore.getSpillCount() != 0) {
+            logger.printf("Spilled %d entries (%d KiB) to disk.\n", spillStore.getSpillCount(), spillStore.getSpillSize() / 1024);
+        }
+        phase.commit();
+        return input;
+    }
+
+    // Streamed sources can only be inflated in order, but parsing each entry can be done by the workers.
+    private void readParallel(InputSource source, RemapInput input) throws IOException {
+        record Parsed(String name, Future<FileData> data) { }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, WORKER_FACTORY);
+        Deque<Parsed> inFlight = new ArrayDeque<>();
+        try {
+            source.read((name, bytes) -> {
+                if (inFlight.size() >= threads * 4) {
+                    Parsed parsed = inFlight.poll();
+                    input.addEntry(parsed.name(), await(parsed.data()));
+                }
+                FileData.Content content = input.store(bytes);
+                inFlight.add(new Parsed(name, executor.submit(() -> input.parse(name, bytes, content))));
+            });
+            while (!inFlight.isEmpty()) {
+                Parsed parsed = inFlight.poll();
+                input.addEntry(parsed.name(), await(parsed.data()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void doRemapping(ASMRemapper remapper, OutputSink sink) throws IOException {
         logger.println("Remapping...");
+        var phase = RemapEvents.Phase.start("Remap");
         long start = System.nanoTime();
-        ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
-        try (ZipOutputStream outputZip = new ZipOutputStream(zipOut)) {
-            for (var entry : inputZip.entrySet()) {
-                processEntry(remapper, entry.getKey(), entry.getValue(), outputZip);
+        int count = remapAll(remapper, sink);
+
+        long end = System.nanoTime();
+        phase.commit();
+        logger.printf("Remapped %d classes in %s\n", count, formatDuration(end - start));
+        if (verbose) {
+            logMemoStats(remapper);
+        }
+    }
+
+    private void logMemoStats(ASMRemapper remapper) {
+        String stats = remapper.formatMemoStats();
+        if (stats != null) {
+            logger.println("Descriptor cache: " + stats);
+        }
+    }
+
+    private int remapAll(ASMRemapper remapper, OutputSink sink) throws IOException {
+        if (threads == 1) return remapAll(remapper, sink, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, WORKER_FACTORY);
+        try {
+            return remapAll(remapper, sink, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int remapAll(ASMRemapper remapper, OutputSink sink, @Nullable ExecutorService executor) throws IOException {
+        RemapInput input = remapper.getInput();
+        ZipOutputSink zipSink = sink instanceof ZipOutputSink z ? z : null;
+        int remapCount = 0;
+        if (executor == null) {
+            for (String name : input.getNames()) {
+                remapCount += write(processEntry(remapper, name, false), sink, zipSink);
             }
+            return remapCount;
         }
 
-        long end = System.nanoTime();
-        logger.printf("Remapped %d classes in %s\n", remapCount, formatDuration(end - start));
-        return zipOut.toByteArray();
+        // Workers load, remap and deflate entries. This thread writes them in input order,
+        // with a bounded number of entries in flight so we don't buffer the entire output.
+        int maxInFlight = threads * 4;
+        Deque<Future<@Nullable Processed>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            for (String name : input.getNames()) {
+                if (inFlight.size() >= maxInFlight) {
+                    remapCount += write(await(inFlight.poll()), sink, zipSink);
+                }
+                inFlight.add(executor.submit(() -> processEntry(remapper, name, zipSink != null)));
+            }
+            while (!inFlight.isEmpty()) {
+                remapCount += write(await(inFlight.poll()), sink, zipSink);
+            }
+        } finally {
+            // Only non-empty if we failed, the executor may be shared so cancel what we submitted.
+            for (Future<@Nullable Processed> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+        return remapCount;
     }
 
-    private void processEntry(ASMRemapper remapper, String name, FileData data, ZipOutputStream outputZip) throws IOException {
-        // Strip signing data and any additional files.
-        if (name.endsWith(".SF") || name.endsWith(".DSA") || name.endsWith(".RSA") || isStripped(name)) return;
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst remapping.");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException rt) throw rt;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static int write(@Nullable Processed processed, OutputSink sink, @Nullable ZipOutputSink zipSink) throws IOException {
+        if (processed == null) return 0;
+
+        if (processed.deflated != null) {
+            assert zipSink != null;
+            zipSink.write(processed.deflated);
+        } else {
+            sink.write(processed.name, processed.data);
+        }
+        return processed.remapped ? 1 : 0;
+    }
+
+    /**
+     * Load and process a single entry.
+     *
+     * @param remapper The remapper.
+     * @param name     The name of the entry.
+     * @param deflate  If the output should be deflated ahead of time, for a {@link ZipOutputSink}.
+     * @return The processed entry, {@code null} if it should be stripped.
+     */
+    private @Nullable Processed processEntry(ASMRemapper remapper, String name, boolean deflate) throws IOException {
+        if (isStripped(name)) return null;
+
+        FileData data = remapper.getInput().getEntry(name);
+        if (data == null) return null;
 
         if (name.equals("META-INF/MANIFEST.MF")) {
-            processManifest(name, data.data(), outputZip);
-            return;
+            return Processed.of(name, processManifest(remapper, data.data()), false, deflate);
         }
 
-        if (!name.endsWith(".class") || isExcluded(name.replace('/', '.'))) {
-            writeEntry(outputZip, name, data.data());
-            return;
+        if (!name.endsWith(".class")) {
+            byte[] bytes = data.data();
+            if (resourceIncludes.matches(name)) {
+                bytes = remapper.getResourceRemapper().remap(bytes);
+            }
+            return Processed.of(mapResourceName(remapper, name), bytes, false, deflate);
+        }
+        if (excludes.matches(name)) {
+            return Processed.of(name, data.data(), false, deflate);
         }
 
         var classData = ((FileData.ClassFileData) data);
+        return Processed.of(remapper.mapType(classData.cName()) + ".class", remapClass(remapper, classData), true, deflate);
+    }
+
+    /**
+     * Remap a single class.
+     *
+     * @param remapper  The remapper.
+     * @param classData The class.
+     * @return The remapped class bytes.
+     */
+    byte[] remapClass(ASMRemapper remapper, FileData.ClassFileData classData) {
+        var event = new RemapEvents.RemapClass();
+        event.begin();
         String cName;
         ClassWriter cw = new ClassWriter(0);
-        ClassReader reader = new ClassReader(classData.data());
+        byte[] bytes = classData.data();
+        ClassReader reader = new ClassReader(bytes);
         cName = reader.getClassName();
-        remapper.collectDirectSupertypes(reader);
+        if (!remapper.isClassNamesOnly()) {
+            // Only member lookups walk the hierarchy.
+            remapper.getInput().collectDirectSupertypes(reader);
+        }
 
         ClassVisitor cv = buildTransformTree(remapper, reader, cw, classData);
         reader.accept(cv, 0);
@@ -333,8 +1220,57 @@ public final class FastRemapper {
         if (verbose) {
             logger.printf("Mapping %s -> %s\n", cName, mapped);
         }
-        writeEntry(outputZip, mapped + ".class", cw.toByteArray());
-        remapCount++;
+        byte[] output = cw.toByteArray();
+        if (event.shouldCommit()) {
+            event.className = cName;
+            event.mappedName = mapped;
+            event.inputSize = bytes.length;
+            event.outputSize = output.length;
+            event.commit();
+        }
+        return output;
+    }
+
+    private boolean isStripped(String name) {
+        // Strip signing data and any additional files.
+        return name.endsWith(".SF") || name.endsWith(".DSA") || name.endsWith(".RSA") || strips.matches(name);
+    }
+
+    /**
+     * Compute the output name of the given entry, without reading it.
+     *
+     * @param remapper The remapper.
+     * @param name     The name of the entry.
+     * @return The output name, {@code null} if the entry is stripped.
+     */
+    @Nullable
+    String mapEntryName(ASMRemapper remapper, String name) {
+        if (isStripped(name)) return null;
+        if (!name.endsWith(".class")) return mapResourceName(remapper, name);
+        if (excludes.matches(name)) return name;
+
+        return remapper.mapType(name.substring(0, name.length() - 6)) + ".class";
+    }
+
+    private String mapResourceName(ASMRemapper remapper, String name) {
+        if (resourceIncludes.isEmpty() || !name.startsWith(SERVICES_PREFIX)) return name;
+
+        // Service files are named after the service's binary class name.
+        String service = name.substring(SERVICES_PREFIX.length());
+        if (service.isEmpty() || service.indexOf('/') != -1) return name;
+        return SERVICES_PREFIX + remapper.map(service.replace('.', '/')).replace('/', '.');
+    }
+
+    /**
+     * Process a single entry.
+     *
+     * @param remapper The remapper.
+     * @param name     The name of the entry.
+     * @return The output bytes, {@code null} if the entry does not exist or is stripped.
+     */
+    byte @Nullable [] processSingle(ASMRemapper remapper, String name) throws IOException {
+        Processed processed = processEntry(remapper, name, false);
+        return processed != null ? processed.data() : null;
     }
 
     @VisibleForTesting
@@ -355,119 +1291,383 @@ public final class FastRemapper {
             cv = new DeprecatedAttributeFixer(cv, classData);
         }
         if (fixStrippedCtors) {
-            cv = new StrippedCtorFixer(cv, this, remapper, classData);
+            cv = new StrippedCtorFixer(cv, remapper.getInput(), remapper, classData);
         }
         if (fixLocals) {
-            cv = new LocalVariableFixer(cv, this);
+            cv = new LocalVariableFixer(cv, remapper.getInput());
         }
         return cv;
     }
 
-    private static void processManifest(String name, byte[] data, ZipOutputStream outputZip) throws IOException {
+    private byte[] processManifest(ASMRemapper remapper, byte[] data) throws IOException {
         Manifest manifest = new Manifest(new ByteArrayInputStream(data));
         // Yeet signing data.
         manifest.getEntries().clear();
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        if (!resourceIncludes.isEmpty()) {
+            Attributes attributes = manifest.getMainAttributes();
+            for (String attribute : CLASS_ATTRIBUTES) {
+                String value = attributes.getValue(attribute);
+                if (value != null) {
+                    attributes.putValue(attribute, remapper.map(value.trim().replace('.', '/')).replace('/', '.'));
+                }
+            }
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length);
         manifest.write(bos);
-        writeEntry(outputZip, name, bos.toByteArray());
+        return bos.toByteArray();
     }
 
-    private static void writeEntry(ZipOutputStream zos, String name, byte[] data) throws IOException {
-        ZipEntry entry = new ZipEntry(name);
-        entry.setTime(0);
-        zos.putNextEntry(entry);
-        zos.write(data);
-        zos.closeEntry();
+    static String formatDuration(long elapsedTimeInNs) {
+        StringBuilder result = new StringBuilder();
+        if (elapsedTimeInNs > 3600000000000L) {
+            result.append(elapsedTimeInNs / 3600000000000L).append("h ");
+        }
+
+        if (elapsedTimeInNs > 60000000000L) {
+            result.append(elapsedTimeInNs % 3600000000000L / 60000000000L).append("m ");
+        }
+
+        if (elapsedTimeInNs >= 1000000000L) {
+            result.append(elapsedTimeInNs % 60000000000L / 1000000000L).append("s ");
+        }
+
+        if (elapsedTimeInNs >= 1000000L) {
+            result.append(elapsedTimeInNs % 1000000000L / 1000000L).append("ms");
+        }
+
+        return result.toString();
+    }
+
+    private static boolean isSet(OptionSet optSet, OptionSpec<Void> enable, OptionSpec<Void> all, OptionSpec<Void> disable) {
+        return optSet.has(all) && !optSet.has(disable) || optSet.has(enable);
     }
 
-    private boolean isExcluded(String path) {
-        for (String exclude : excludes) {
-            if (path.startsWith(exclude)) {
-                return true;
+    /**
+     * Parses a byte size with an optional k, m or g suffix.
+     */
+    private static class SizeConverter implements ValueConverter<Long> {
+
+        @Override
+        public Long convert(String value) {
+            String str = value.trim().toLowerCase(Locale.ROOT);
+            long mul = 1;
+            if (str.endsWith("k")) {
+                mul = 1024L;
+            } else if (str.endsWith("m")) {
+                mul = 1024L * 1024L;
+            } else if (str.endsWith("g")) {
+                mul = 1024L * 1024L * 1024L;
             }
+            if (mul != 1) {
+                str = str.substring(0, str.length() - 1);
+            }
+            try {
+                long size = Long.parseLong(str) * mul;
+                if (size <= 0) throw new ValueConversionException("Expected a positive size: " + value);
+                return size;
+            } catch (NumberFormatException ex) {
+                throw new ValueConversionException("Invalid size: " + value, ex);
+            }
+        }
+
+        @Override
+        public Class<? extends Long> valueType() {
+            return Long.class;
+        }
+
+        @Override
+        public String valuePattern() {
+            return "size[k|m|g]";
         }
-        return false;
     }
 
-    private boolean isStripped(String path) {
-        for (String exclude : strips) {
-            if (path.startsWith(exclude)) {
-                return true;
+    private static class LinkConverter implements ValueConverter<MappingChain.Link> {
+
+        private static final String FLIP_PREFIX = "flip:";
+
+        @Override
+        public MappingChain.Link convert(String value) {
+            boolean flip = value.startsWith(FLIP_PREFIX);
+            if (flip) {
+                value = value.substring(FLIP_PREFIX.length());
+            }
+            try {
+                return new MappingChain.Link(Path.of(value), flip);
+            } catch (InvalidPathException ex) {
+                throw new ValueConversionException("Invalid path: " + value, ex);
             }
         }
-        return false;
-    }
 
-    public byte @Nullable [] getClassBytes(String cName) {
-        return inputZip.get(cName + ".class").data();
-    }
+        @Override
+        public Class<? extends MappingChain.Link> valueType() {
+            return MappingChain.Link.class;
+        }
 
-    public @Nullable FileData.ClassFileData getClassData(String cName) {
-        var data = inputZip.get(cName + ".class");
-        return data instanceof FileData.ClassFileData cData ? cData : null;
+        @Override
+        public String valuePattern() {
+            return "[flip:]path";
+        }
     }
 
-    public void storeMethodDepth(String owner, String name, String desc, int depth) {
-        methodDepth.put(owner + "." + name + desc, depth);
+    /**
+     * A single output of a multi-target remap.
+     *
+     * @param mappings The mappings to remap with.
+     * @param sink     Where to write the output.
+     */
+    public record Target(IMappingFile mappings, OutputSink sink) { }
+
+    /**
+     * A processed entry, ready to be written.
+     * <p>
+     * Either {@code data} or {@code deflated} is set.
+     */
+    private record Processed(String name, byte @Nullable [] data, ZipWriter.@Nullable Deflated deflated, boolean remapped) {
+
+        private static Processed of(String name, byte[] data, boolean remapped, boolean deflate) {
+            if (deflate) return new Processed(name, null, ZipWriter.deflate(name, data), remapped);
+            return new Processed(name, data, null, remapped);
+        }
     }
 
-    public int getMethodDepth(String owner, String method) {
-        String key = owner + "." + method;
-        Integer depth = methodDepth.get(key);
-        if (depth == null) {
-            depth = computeMethodDepth(owner, method);
+    public static final class Builder {
+
+        private PrintStream logger = new PrintStream(OutputStream.nullOutputStream());
+        private final List<String> excludes = new ArrayList<>();
+        private final List<String> strips = new ArrayList<>();
+        private final List<String> resourceIncludes = new ArrayList<>();
+        private final Map<String, String> relocations = new LinkedHashMap<>();
+        private @Nullable Path deltaFrom;
+        private @Nullable Path cacheDir;
+        private long cacheSize;
+        private boolean flipMappings;
+        private MappingChain.MissingPolicy chainPolicy = MappingChain.MissingPolicy.IDENTITY;
+        private boolean pruneMappings;
+        private boolean classNamesOnly;
+        private boolean verify;
+        private boolean verbose;
+        private boolean mcBundle;
+        private boolean fixLocals;
+        private boolean fixSource;
+        private boolean fixParamAnns;
+        private boolean fixStrippedCtors;
+        private boolean fixRecordCtorParamNames;
+        private boolean fixDeprecated;
+        private long maxHeapBuffer = -1;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private @Nullable IMappingFile mappings;
+
+        private Builder() {
         }
-        return depth;
-    }
 
-    private int computeMethodDepth(String owner, String method) {
-        byte[] bytes = getClassBytes(owner);
-        if (bytes == null) {
-            logger.println("Unable to compute used locals for missing class+method: " + owner + "." + method);
-            return 1;
+        /**
+         * Where to log progress. Logs nothing by default.
+         */
+        public Builder logger(PrintStream logger) {
+            this.logger = logger;
+            return this;
         }
 
-        ClassReader reader = new ClassReader(bytes);
-        // Tell the LocalVariableFixer to visit the class, this will trigger it to update the methodDepth for each method.
-        reader.accept(new LocalVariableFixer(null, this), 0);
-        return methodDepth.getOrDefault(owner + "." + method, 1);
-    }
+        /**
+         * Classes or packages to exclude from remapping, see {@link PrefixMatcher}.
+         */
+        public Builder excludes(Collection<String> excludes) {
+            this.excludes.addAll(excludes);
+            return this;
+        }
 
-    public Type[] getCtorParams(String owner) {
-        if (owner.equals("java/lang/Object")) return new Type[0];
-        var data = getClassData(owner);
-        if (data == null) {
-            logger.println("Unable to compute ctor params for missing class: " + owner);
-            return new Type[0];
+        /**
+         * Files to strip from the output, see {@link PrefixMatcher}.
+         */
+        public Builder strips(Collection<String> strips) {
+            this.strips.addAll(strips);
+            return this;
         }
-        return FastStream.of(data.methods())
-                .filter(e -> e.name().equals("<init>"))
-                .map(e -> e.desc().getArgumentTypes())
-                .lastOrDefault(new Type[0]);
-    }
 
-    private static String formatDuration(long elapsedTimeInNs) {
-        StringBuilder result = new StringBuilder();
-        if (elapsedTimeInNs > 3600000000000L) {
-            result.append(elapsedTimeInNs / 3600000000000L).append("h ");
+        /**
+         * Resources to remap class names within, see {@link PrefixMatcher}.
+         * <p>
+         * When any are set, service files are also renamed, and manifest attributes
+         * such as {@code Main-Class} are remapped.
+         */
+        public Builder remapResources(Collection<String> includes) {
+            resourceIncludes.addAll(includes);
+            return this;
         }
 
-        if (elapsedTimeInNs > 60000000000L) {
-            result.append(elapsedTimeInNs % 3600000000000L / 60000000000L).append("m ");
+        /**
+         * Relocate classes by prefix, applied after the mappings.
+         * <p>
+         * Each key is a prefix of internal class names, such as {@code com/google/},
+         * mapped to its replacement, such as {@code shaded/com/google/}. The longest
+         * matching prefix wins.
+         */
+        public Builder relocate(Map<String, String> relocations) {
+            this.relocations.putAll(relocations);
+            return this;
         }
 
-        if (elapsedTimeInNs >= 1000000000L) {
-            result.append(elapsedTimeInNs % 60000000000L / 1000000000L).append("s ");
+        /**
+         * Make {@link #run} write a delta against a previous output. Only entries which changed
+         * are written, along with a list of entries which were removed, see {@link OutputSink#toDeltaZip}.
+         */
+        public Builder deltaFrom(@Nullable Path previous) {
+            deltaFrom = previous;
+            return this;
         }
 
-        if (elapsedTimeInNs >= 1000000L) {
-            result.append(elapsedTimeInNs % 1000000000L / 1000000L).append("ms");
+        /**
+         * Cache results of {@link #run} in the given directory, keyed by the input, mappings,
+         * version and options. The directory may be shared by several processes.
+         *
+         * @param cacheDir  The cache directory.
+         * @param cacheSize The maximum size of the directory, in bytes. Least recently used
+         *                  results are evicted past this.
+         */
+        public Builder cache(Path cacheDir, long cacheSize) {
+            this.cacheDir = cacheDir;
+            this.cacheSize = cacheSize;
+            return this;
         }
 
-        return result.toString();
-    }
+        /**
+         * If mappings loaded from a file by {@link #run} should be reversed.
+         */
+        public Builder flipMappings(boolean flipMappings) {
+            this.flipMappings = flipMappings;
+            return this;
+        }
 
-    private static boolean isSet(OptionSet optSet, OptionSpec<Void> enable, OptionSpec<Void> all, OptionSpec<Void> disable) {
-        return optSet.has(all) && !optSet.has(disable) || optSet.has(enable);
+        /**
+         * How entries missing from later files are handled, when {@link #run} is given a chain of mappings.
+         */
+        public Builder chainPolicy(MappingChain.MissingPolicy chainPolicy) {
+            this.chainPolicy = chainPolicy;
+            return this;
+        }
+
+        /**
+         * If {@link #run} should only keep member mappings for classes in the input and their supertypes.
+         * References to members of other classes are left unmapped.
+         */
+        public Builder pruneMappings(boolean pruneMappings) {
+            this.pruneMappings = pruneMappings;
+            return this;
+        }
+
+        /**
+         * If only class names should be remapped, in types, descriptors and signatures. Field and method
+         * names are left as they are, the class hierarchy and member data of the input are never built.
+         * <p>
+         * Not supported with {@link #fixStrippedCtors} or {@link #fixDeprecated}.
+         */
+        public Builder classNamesOnly(boolean classNamesOnly) {
+            this.classNamesOnly = classNamesOnly;
+            return this;
+        }
+
+        /**
+         * If {@link #run} should check that every field and method reference in its output resolves,
+         * against the output and the JDK. The run fails if any don't.
+         */
+        public Builder verify(boolean verify) {
+            this.verify = verify;
+            return this;
+        }
+
+        public Builder verbose(boolean verbose) {
+            this.verbose = verbose;
+            return this;
+        }
+
+        /**
+         * If {@link #run} should treat its input as a Minecraft server bundle.
+         */
+        public Builder mcBundle(boolean mcBundle) {
+            this.mcBundle = mcBundle;
+            return this;
+        }
+
+        public Builder fixLocals(boolean fixLocals) {
+            this.fixLocals = fixLocals;
+            return this;
+        }
+
+        public Builder fixSource(boolean fixSource) {
+            this.fixSource = fixSource;
+            return this;
+        }
+
+        public Builder fixParamAnns(boolean fixParamAnns) {
+            this.fixParamAnns = fixParamAnns;
+            return this;
+        }
+
+        public Builder fixStrippedCtors(boolean fixStrippedCtors) {
+            this.fixStrippedCtors = fixStrippedCtors;
+            return this;
+        }
+
+        public Builder fixRecordCtorParamNames(boolean fixRecordCtorParamNames) {
+            this.fixRecordCtorParamNames = fixRecordCtorParamNames;
+            return this;
+        }
+
+        public Builder fixDeprecated(boolean fixDeprecated) {
+            this.fixDeprecated = fixDeprecated;
+            return this;
+        }
+
+        /**
+         * Enable all fixers.
+         */
+        public Builder allFixers() {
+            fixLocals = true;
+            fixSource = true;
+            fixParamAnns = true;
+            fixStrippedCtors = true;
+            fixRecordCtorParamNames = true;
+            fixDeprecated = true;
+            return this;
+        }
+
+        /**
+         * Limit the number of bytes of input entries which are kept on the heap, per remap.
+         * <p>
+         * Entries loaded past this limit are spilled to a temporary file, and read back on demand. Inputs
+         * which are read on demand, such as zip files and directories, are read again from the input instead.
+         * A quarter of the limit is used to cache recently read entries.
+         *
+         * @param maxHeapBuffer The limit in bytes, or {@code -1} to keep everything on the heap.
+         */
+        public Builder maxHeapBuffer(long maxHeapBuffer) {
+            this.maxHeapBuffer = maxHeapBuffer;
+            return this;
+        }
+
+        /**
+         * The number of threads used to load, remap and compress entries.
+         * <p>
+         * Output is always written in input order, regardless of the number of threads.
+         *
+         * @param threads The number of threads, {@code 1} to remap on the calling thread.
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Expected at least 1 thread.");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * The pre-loaded mappings to use for {@link #remap(InputSource, OutputSink)}.
+         */
+        public Builder mappings(IMappingFile mappings) {
+            this.mappings = mappings;
+            return this;
+        }
+
+        public FastRemapper build() {
+            return new FastRemapper(this);
+        }
     }
 }
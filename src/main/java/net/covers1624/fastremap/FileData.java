@@ -14,15 +14,56 @@ import static java.util.Objects.requireNonNull;
 public sealed interface FileData {
 
     static FileData create(String fName, byte[] data) {
+        return create(fName, data, Content.of(data));
+    }
+
+    static FileData create(String fName, byte[] data, Content content) {
+        return create(fName, data, content, false);
+    }
+
+    /**
+     * @param headerOnly If only the header of classes should be read, see {@link ClassFileData#createHeader}.
+     */
+    static FileData create(String fName, byte[] data, Content content, boolean headerOnly) {
         if (fName.endsWith(".class")) {
-            return ClassFileData.create(data);
+            return headerOnly ? ClassFileData.createHeader(data, content) : ClassFileData.create(data, content);
         }
-        return new RegularFileData(data);
+        return new RegularFileData(content);
+    }
+
+    Content content();
+
+    default byte[] data() {
+        return content().get();
     }
 
-    byte[] data();
+    /**
+     * The raw bytes of a file.
+     * <p>
+     * These may be held on the heap, or spilled elsewhere by a {@link SpillStore}.
+     */
+    interface Content {
+
+        byte[] get();
+
+        int size();
+
+        static Content of(byte[] bytes) {
+            return new Content() {
+                @Override
+                public byte[] get() {
+                    return bytes;
+                }
+
+                @Override
+                public int size() {
+                    return bytes.length;
+                }
+            };
+        }
+    }
 
-    record RegularFileData(byte[] data) implements FileData { }
+    record RegularFileData(Content content) implements FileData { }
 
     record ClassFileData(
             int access,
@@ -32,7 +73,7 @@ public sealed interface FileData {
             String @Nullable [] interfaces,
             List<FieldData> fields,
             List<MethodData> methods,
-            byte[] data
+            Content content
     ) implements FileData {
 
         @Override
@@ -45,6 +86,29 @@ public sealed interface FileData {
         public record MethodData(int access, boolean hasDeprecated, String name, Type desc) { }
 
         public static ClassFileData create(byte[] bytes) {
+            return create(bytes, Content.of(bytes));
+        }
+
+        /**
+         * Read only the class header, the class itself is never visited.
+         * <p>
+         * The member lists are empty, and {@link #hasDeprecated()} is always {@code false}.
+         */
+        public static ClassFileData createHeader(byte[] bytes, Content content) {
+            var reader = new ClassReader(bytes);
+            return new ClassFileData(
+                    reader.getAccess(),
+                    false,
+                    reader.getClassName(),
+                    reader.getSuperName(),
+                    reader.getInterfaces(),
+                    List.of(),
+                    List.of(),
+                    content
+            );
+        }
+
+        public static ClassFileData create(byte[] bytes, Content content) {
             class Visitor extends ClassVisitor {
 
                 public int access;
@@ -131,7 +195,7 @@ public sealed interface FileData {
                     visitor.interfaces,
                     List.copyOf(visitor.fields),
                     List.copyOf(visitor.methods),
-                    bytes
+                    content
             );
         }
     }
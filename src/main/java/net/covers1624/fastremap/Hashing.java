@@ -9,15 +9,20 @@ import java.security.NoSuchAlgorithmException;
 public class Hashing {
 
     public static String sha256(byte[] bytes) {
-        MessageDigest digest;
+        MessageDigest digest = newSha256();
+        digest.update(bytes);
+        return toHex(digest.digest());
+    }
+
+    public static MessageDigest newSha256() {
         try {
-            digest = MessageDigest.getInstance("SHA-256");
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException ex) {
             throw new RuntimeException("Unable to get SHA-256 digest.", ex);
         }
-        digest.update(bytes);
+    }
 
-        byte[] hash = digest.digest();
+    public static String toHex(byte[] hash) {
         StringBuilder sb = new StringBuilder(2 * hash.length);
         for (byte b : hash) {
             sb.append(Character.forDigit(b >> 4 & 0xF, 16));
@@ -0,0 +1,55 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A thread-safe LRU of entry contents, bounded by their total size in bytes.
+ * <p>
+ * Used in front of entries which are not kept on the heap, as classes which are
+ * hit for hierarchy or method depth lookups tend to be hit many times.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class HotCache<K> {
+
+    private final long budget;
+    // In access order.
+    private final LinkedHashMap<K, byte[]> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long size;
+
+    HotCache(long budget) {
+        this.budget = budget;
+    }
+
+    public synchronized byte @Nullable [] get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Add an entry, evicting the least recently used entries until the cache is within budget.
+     *
+     * @param key   The key.
+     * @param bytes The content.
+     * @return The content already cached for the key, otherwise the given content.
+     */
+    public synchronized byte[] put(K key, byte[] bytes) {
+        byte[] existing = entries.putIfAbsent(key, bytes);
+        if (existing != null) return existing;
+
+        size += bytes.length;
+        Iterator<byte[]> itr = entries.values().iterator();
+        while (size > budget && itr.hasNext()) {
+            size -= itr.next().length;
+            itr.remove();
+        }
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+}
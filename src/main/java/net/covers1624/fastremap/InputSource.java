@@ -0,0 +1,145 @@
+package net.covers1624.fastremap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Provides the entries to be remapped.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+@FunctionalInterface
+public interface InputSource {
+
+    /**
+     * Read all entries of this source, in order.
+     *
+     * @param consumer The consumer to pass each entry to.
+     */
+    void read(EntryConsumer consumer) throws IOException;
+
+    /**
+     * A zip file, on any {@link FileSystem}.
+     *
+     * @param zip The path to the zip.
+     * @return The source.
+     */
+    static InputSource ofZip(Path zip) {
+        return new ZipInputSource(() -> ZipReader.open(zip));
+    }
+
+    /**
+     * Every file in a directory, such as compiler output.
+     * <p>
+     * Entries are named relative to the directory, and read on demand.
+     *
+     * @param dir The directory.
+     * @return The source.
+     */
+    static InputSource ofDirectory(Path dir) {
+        return new DirectoryInputSource(dir);
+    }
+
+    /**
+     * A zip file held in memory.
+     *
+     * @param zip The bytes of the zip.
+     * @return The source.
+     */
+    static InputSource ofZip(byte[] zip) {
+        return new ZipInputSource(() -> ZipReader.of(zip));
+    }
+
+    /**
+     * A zip file read from a stream.
+     * <p>
+     * The returned source can only be read once, the stream is closed once read.
+     * Prefer {@link #ofZip(Path)} or {@link #ofZip(byte[])} where possible, which allow
+     * entries to be loaded on demand.
+     *
+     * @param zip The stream.
+     * @return The source.
+     */
+    static InputSource ofZip(InputStream zip) {
+        return consumer -> {
+            try (InputStream is = zip) {
+                readZip(is, consumer);
+            }
+        };
+    }
+
+    /**
+     * Entries held in memory.
+     *
+     * @param entries The entries, iterated in order.
+     * @return The source.
+     */
+    static InputSource ofEntries(Map<String, byte[]> entries) {
+        return consumer -> {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+
+    /**
+     * Every file in the given {@link FileSystem}, such as a zip opened via the zipfs provider.
+     * <p>
+     * Entries are named relative to their root directory and read in sorted order.
+     *
+     * @param fileSystem The file system.
+     * @return The source.
+     */
+    static InputSource ofFileSystem(FileSystem fileSystem) {
+        return consumer -> {
+            for (Path root : fileSystem.getRootDirectories()) {
+                List<Path> files = new ArrayList<>();
+                try (Stream<Path> stream = Files.walk(root)) {
+                    stream.filter(Files::isRegularFile).forEach(files::add);
+                }
+                files.sort(null);
+                for (Path file : files) {
+                    String name = root.relativize(file).toString().replace(fileSystem.getSeparator(), "/");
+                    consumer.accept(name, Files.readAllBytes(file));
+                }
+            }
+        };
+    }
+
+    private static void readZip(InputStream is, EntryConsumer consumer) throws IOException {
+        try (ZipInputStream zin = new ZipInputStream(is)) {
+            ZipEntry entry;
+            ByteArrayOutputStream obuf = new ByteArrayOutputStream(32 * 1024); // 32k
+            while ((entry = zin.getNextEntry()) != null) {
+                long size = entry.getSize();
+                if (size >= 0 && size <= Integer.MAX_VALUE - 8) {
+                    // Size is known up front, read straight into the result.
+                    byte[] bytes = new byte[(int) size];
+                    if (zin.readNBytes(bytes, 0, bytes.length) != bytes.length) throw new EOFException("Entry " + entry.getName() + " is truncated.");
+                    consumer.accept(entry.getName(), bytes);
+                    continue;
+                }
+                zin.transferTo(obuf);
+                consumer.accept(entry.getName(), obuf.toByteArray());
+                obuf.reset();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(String name, byte[] bytes) throws IOException;
+    }
+}
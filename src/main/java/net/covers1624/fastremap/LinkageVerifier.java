@@ -0,0 +1,362 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.*;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Checks that every field and method reference in a set of classes resolves, against those
+ * classes and the JDK.
+ * <p>
+ * Classes are indexed in parallel, recording their members and the references they make.
+ * References are then resolved from the index, following the JVM's lookup order: fields are
+ * searched for in the class, its interfaces then its super class, methods in the class and its
+ * super classes then their interfaces. JDK classes are indexed from their class files on first
+ * use, never loaded. References which reach a class in neither, such as a library, can't be
+ * checked and are counted as skipped.
+ * <p>
+ * Each method's {@code maxStack} and {@code maxLocals} are also checked against what its code
+ * needs. Frames are not read, so code after an unconditional jump is not simulated. This only
+ * ever under-estimates what the code needs, so never reports a false positive.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class LinkageVerifier {
+
+    private static final ClassLoader JDK = ClassLoader.getPlatformClassLoader();
+
+    private final Map<String, ClassInfo> classes = new ConcurrentHashMap<>();
+    private final Map<String, Optional<ClassInfo>> jdkClasses = new ConcurrentHashMap<>();
+
+    /**
+     * Index a class. May be called concurrently.
+     *
+     * @param bytes The class bytes.
+     */
+    public void index(byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassInfo info;
+        try {
+            info = ClassInfo.read(reader, true);
+        } catch (RuntimeException ex) {
+            // Code the analyzer can't simulate, such as jsr/ret, only check references.
+            info = ClassInfo.read(reader, false);
+        }
+        classes.put(info.name, info);
+    }
+
+    /**
+     * Resolve the references of every indexed class.
+     *
+     * @param executor The executor to resolve classes on, {@code null} to resolve on this thread.
+     * @return The results.
+     */
+    public Report verify(@Nullable ExecutorService executor) throws IOException {
+        LongAdder references = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        Queue<String> unresolved = new ConcurrentLinkedQueue<>();
+        Queue<String> badMaxs = new ConcurrentLinkedQueue<>();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (ClassInfo clazz : classes.values()) {
+            Runnable task = () -> {
+                for (Ref ref : clazz.refs) {
+                    references.increment();
+                    switch (resolve(ref)) {
+                        case MISSING -> unresolved.add(clazz.name + " -> " + ref);
+                        case UNKNOWN -> skipped.increment();
+                    }
+                }
+                for (String problem : clazz.badMaxs) {
+                    badMaxs.add(clazz.name + "." + problem);
+                }
+            };
+            if (executor == null) {
+                task.run();
+            } else {
+                futures.add(executor.submit(task));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted whilst verifying.");
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Failed to verify.", ex.getCause());
+            }
+        }
+
+        List<String> unresolvedList = new ArrayList<>(unresolved);
+        List<String> badMaxsList = new ArrayList<>(badMaxs);
+        Collections.sort(unresolvedList);
+        Collections.sort(badMaxsList);
+        return new Report(classes.size(), references.sum(), skipped.sum(), unresolvedList, badMaxsList);
+    }
+
+    private Result resolve(Ref ref) {
+        // Array types only inherit from Object.
+        if (ref.owner.startsWith("[")) return Result.RESOLVED;
+
+        String key = ref.name + " " + ref.desc;
+        if (!ref.method) return resolveField(ref.owner, key, new HashSet<>());
+
+        // Constructors are never inherited.
+        if (ref.name.equals("<init>")) {
+            ClassInfo clazz = find(ref.owner);
+            if (clazz == null) return Result.UNKNOWN;
+            return clazz.methods.contains(key) ? Result.RESOLVED : Result.MISSING;
+        }
+        return resolveMethod(ref.owner, ref.name, key);
+    }
+
+    private Result resolveField(String owner, String key, Set<String> visited) {
+        if (!visited.add(owner)) return Result.MISSING;
+        ClassInfo clazz = find(owner);
+        if (clazz == null) return Result.UNKNOWN;
+        if (clazz.fields.contains(key)) return Result.RESOLVED;
+
+        Result result = Result.MISSING;
+        for (String itf : clazz.interfaces) {
+            result = result.or(resolveField(itf, key, visited));
+            if (result == Result.RESOLVED) return result;
+        }
+        if (clazz.superName != null) {
+            result = result.or(resolveField(clazz.superName, key, visited));
+        }
+        return result;
+    }
+
+    private Result resolveMethod(String owner, String name, String key) {
+        Result result = Result.MISSING;
+        List<String> interfaces = new ArrayList<>();
+        for (String cName = owner; cName != null; ) {
+            ClassInfo clazz = find(cName);
+            if (clazz == null) {
+                result = Result.UNKNOWN;
+                break;
+            }
+            if (clazz.methods.contains(key) || clazz.polymorphic.contains(name)) return Result.RESOLVED;
+            Collections.addAll(interfaces, clazz.interfaces);
+            cName = clazz.superName;
+        }
+
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(interfaces);
+        while (!queue.isEmpty()) {
+            String itf = queue.poll();
+            if (!visited.add(itf)) continue;
+
+            ClassInfo clazz = find(itf);
+            if (clazz == null) {
+                result = Result.UNKNOWN;
+                continue;
+            }
+            if (clazz.methods.contains(key)) return Result.RESOLVED;
+            Collections.addAll(queue, clazz.interfaces);
+        }
+        return result;
+    }
+
+    private @Nullable ClassInfo find(String cName) {
+        ClassInfo clazz = classes.get(cName);
+        if (clazz != null) return clazz;
+
+        return jdkClasses.computeIfAbsent(cName, e -> {
+            try (InputStream is = JDK.getResourceAsStream(e + ".class")) {
+                if (is == null) return Optional.empty();
+                return Optional.of(ClassInfo.read(new ClassReader(is), false));
+            } catch (IOException ex) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private enum Result {
+        RESOLVED,
+        UNKNOWN,
+        MISSING;
+
+        // Found anywhere wins, otherwise any unknown class means we can't tell.
+        private Result or(Result other) {
+            return values()[Math.min(ordinal(), other.ordinal())];
+        }
+    }
+
+    private record Ref(boolean method, String owner, String name, String desc) {
+
+        @Override
+        public String toString() {
+            return owner + "." + name + (method ? "" : ":") + desc;
+        }
+    }
+
+    /**
+     * The results of a verification.
+     *
+     * @param classes    The number of classes verified.
+     * @param references The number of distinct references, per class.
+     * @param skipped    The number of references which reached a class outside the output and the JDK.
+     * @param unresolved References which don't resolve, as {@code class -> owner.name desc}.
+     * @param badMaxs    Methods whose {@code maxStack} or {@code maxLocals} are too small.
+     */
+    record Report(int classes, long references, long skipped, List<String> unresolved, List<String> badMaxs) {
+
+        public boolean isOk() {
+            return unresolved.isEmpty() && badMaxs.isEmpty();
+        }
+    }
+
+    private static final class ClassInfo {
+
+        private static final String[] NO_INTERFACES = new String[0];
+
+        private String name = "";
+        private @Nullable String superName;
+        private String[] interfaces = NO_INTERFACES;
+        private final Set<String> fields = new HashSet<>();
+        private final Set<String> methods = new HashSet<>();
+        // Signature polymorphic methods, such as MethodHandle.invoke, which match any descriptor.
+        private final Set<String> polymorphic = new HashSet<>();
+        private final Set<Ref> refs = new LinkedHashSet<>();
+        private final List<String> badMaxs = new ArrayList<>();
+
+        private static ClassInfo read(ClassReader reader, boolean analyze) {
+            ClassInfo info = new ClassInfo();
+            reader.accept(info.new Indexer(analyze), analyze ? ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES : ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return info;
+        }
+
+        private void addHandle(Handle handle) {
+            refs.add(new Ref(handle.getTag() > H_PUTSTATIC, handle.getOwner(), handle.getName(), handle.getDesc()));
+        }
+
+        private void addConstant(Object cst) {
+            if (cst instanceof Handle handle) {
+                addHandle(handle);
+            } else if (cst instanceof ConstantDynamic condy) {
+                addHandle(condy.getBootstrapMethod());
+                for (int i = 0; i < condy.getBootstrapMethodArgumentCount(); i++) {
+                    addConstant(condy.getBootstrapMethodArgument(i));
+                }
+            }
+        }
+
+        private final class Indexer extends ClassVisitor {
+
+            private final boolean analyze;
+
+            private Indexer(boolean analyze) {
+                super(ASM9);
+                this.analyze = analyze;
+            }
+
+            @Override
+            public void visit(int version, int access, String name, String signature, @Nullable String superName, String @Nullable [] interfaces) {
+                ClassInfo.this.name = name;
+                ClassInfo.this.superName = superName;
+                if (interfaces != null) {
+                    ClassInfo.this.interfaces = interfaces;
+                }
+            }
+
+            @Override
+            public @Nullable FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                fields.add(name + " " + descriptor);
+                return null;
+            }
+
+            @Override
+            public @Nullable MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                methods.add(name + " " + descriptor);
+                if ((access & (ACC_NATIVE | ACC_VARARGS)) == (ACC_NATIVE | ACC_VARARGS)
+                    && (ClassInfo.this.name.equals("java/lang/invoke/MethodHandle") || ClassInfo.this.name.equals("java/lang/invoke/VarHandle"))) {
+                    polymorphic.add(name);
+                }
+                if (!analyze) return null;
+
+                MaxsChecker checker = new MaxsChecker(name + descriptor);
+                return new RefCollector(checker, new AnalyzerAdapter(ClassInfo.this.name, access, name, descriptor, checker));
+            }
+        }
+
+        private final class RefCollector extends MethodVisitor {
+
+            private final MaxsChecker checker;
+
+            private RefCollector(MaxsChecker checker, MethodVisitor next) {
+                super(ASM9, next);
+                this.checker = checker;
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                refs.add(new Ref(false, owner, name, descriptor));
+                super.visitFieldInsn(opcode, owner, name, descriptor);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                refs.add(new Ref(true, owner, name, descriptor));
+                super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+                addHandle(bootstrapMethodHandle);
+                for (Object arg : bootstrapMethodArguments) {
+                    addConstant(arg);
+                }
+                super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+            }
+
+            @Override
+            public void visitLdcInsn(Object value) {
+                addConstant(value);
+                super.visitLdcInsn(value);
+            }
+
+            @Override
+            public void visitMaxs(int maxStack, int maxLocals) {
+                checker.declaredStack = maxStack;
+                checker.declaredLocals = maxLocals;
+                super.visitMaxs(maxStack, maxLocals);
+            }
+        }
+
+        // Receives the larger of the declared and simulated maximums from the AnalyzerAdapter.
+        private final class MaxsChecker extends MethodVisitor {
+
+            private final String method;
+            private int declaredStack;
+            private int declaredLocals;
+
+            private MaxsChecker(String method) {
+                super(ASM9);
+                this.method = method;
+            }
+
+            @Override
+            public void visitMaxs(int maxStack, int maxLocals) {
+                if (maxStack > declaredStack || maxLocals > declaredLocals) {
+                    badMaxs.add(method + " declares maxStack=" + declaredStack + " maxLocals=" + declaredLocals
+                                + ", needs at least maxStack=" + maxStack + " maxLocals=" + maxLocals);
+                }
+            }
+        }
+    }
+}
@@ -15,14 +15,14 @@ public final class LocalVariableFixer extends ClassVisitor {
     // Lambda target method -> Outer owning method
     private final Map<String, OuterLambdaScope> lambdaMap = new HashMap<>();
 
-    private final FastRemapper remapper;
+    private final RemapInput input;
 
     private String cName;
     private Integer outerMethodDepth;
 
-    public LocalVariableFixer(ClassVisitor cv, FastRemapper remapper) {
+    public LocalVariableFixer(ClassVisitor cv, RemapInput input) {
         super(Opcodes.ASM9, cv);
-        this.remapper = remapper;
+        this.input = input;
     }
 
     @Override
@@ -35,7 +35,7 @@ public final class LocalVariableFixer extends ClassVisitor {
     public void visitOuterClass(String owner, String name, String desc) {
         super.visitOuterClass(owner, name, desc);
         if (name != null) {
-            outerMethodDepth = remapper.getMethodDepth(owner, name + desc);
+            outerMethodDepth = input.getMethodDepth(owner, name + desc);
         }
     }
 
@@ -46,7 +46,7 @@ public final class LocalVariableFixer extends ClassVisitor {
         int parentDepth;
         OuterLambdaScope lambda = lambdaMap.get(name + desc);
         if (lambda != null && (access & Opcodes.ACC_SYNTHETIC) != 0) {
-            parentDepth = remapper.getMethodDepth(cName, lambda.method);
+            parentDepth = input.getMethodDepth(cName, lambda.method);
         } else if (outerMethodDepth != null) {
             parentDepth = outerMethodDepth;
         } else {
@@ -114,7 +114,7 @@ public final class LocalVariableFixer extends ClassVisitor {
 
             @Override
             public void visitEnd() {
-                remapper.storeMethodDepth(cName, name, desc, parentDepth + 1);
+                input.storeMethodDepth(cName, name, desc, parentDepth + 1);
                 super.visitEnd();
             }
         };
@@ -0,0 +1,193 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Composes a chain of mappings, such as {@code obf -> srg -> mcp}, into a single mapping
+ * from the first namespace to the last. The result is used as-is by {@link ASMRemapper},
+ * so a chained remap costs the same as remapping with a single file.
+ * <p>
+ * Entries which first appear in a later hop are treated as unchanged by all prior hops, and
+ * are always included. Entries which a later hop does not contain are handled by a {@link MissingPolicy}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+public final class MappingChain {
+
+    private MappingChain() {
+    }
+
+    /**
+     * What to do with an entry which is missing from a later hop of the chain.
+     */
+    public enum MissingPolicy {
+        /**
+         * The missing hop leaves the entry unchanged, it keeps the name from the previous hop.
+         */
+        IDENTITY,
+        /**
+         * The entry is dropped from the composed mappings, so it is not remapped at all.
+         */
+        DROP,
+        /**
+         * Loading fails.
+         */
+        ERROR,
+    }
+
+    /**
+     * A single file in a chain.
+     *
+     * @param path The mappings file.
+     * @param flip If the mappings should be reversed before composing.
+     */
+    public record Link(Path path, boolean flip) {
+
+        public IMappingFile load() throws IOException {
+            try (InputStream is = Files.newInputStream(path)) {
+                IMappingFile mappings = IMappingFile.load(is);
+                return flip ? mappings.reverse() : mappings;
+            }
+        }
+    }
+
+    /**
+     * Load and compose the given chain.
+     *
+     * @param links  The files, in chain order.
+     * @param policy The policy for missing entries.
+     * @return The composed mappings.
+     */
+    public static IMappingFile load(List<Link> links, MissingPolicy policy) throws IOException {
+        if (links.isEmpty()) throw new IllegalArgumentException("Expected at least one mappings file.");
+
+        IMappingFile mappings = links.get(0).load();
+        for (int i = 1; i < links.size(); i++) {
+            mappings = compose(mappings, links.get(i).load(), policy);
+        }
+        return mappings;
+    }
+
+    /**
+     * Compose the given chain.
+     *
+     * @param chain  The mappings, in chain order.
+     * @param policy The policy for missing entries.
+     * @return The composed mappings.
+     */
+    public static IMappingFile compose(List<IMappingFile> chain, MissingPolicy policy) {
+        if (chain.isEmpty()) throw new IllegalArgumentException("Expected at least one mappings file.");
+
+        IMappingFile mappings = chain.get(0);
+        for (int i = 1; i < chain.size(); i++) {
+            mappings = compose(mappings, chain.get(i), policy);
+        }
+        return mappings;
+    }
+
+    /**
+     * Compose two mappings, {@code a: x -> y} and {@code b: y -> z} into {@code x -> z}.
+     *
+     * @param a      The first hop.
+     * @param b      The second hop.
+     * @param policy The policy for entries of {@code a} which are missing in {@code b}.
+     * @return The composed mappings.
+     */
+    public static IMappingFile compose(IMappingFile a, IMappingFile b, MissingPolicy policy) {
+        IMappingBuilder builder = IMappingBuilder.create("left", "right");
+
+        // Used to bring descriptors of entries only present in b back into a's input namespace.
+        Map<String, String> unmapA = new HashMap<>();
+        for (IMappingFile.IClass ca : a.getClasses()) {
+            unmapA.put(ca.getMapped(), ca.getOriginal());
+        }
+        SimpleRemapper toA = new SimpleRemapper(unmapA);
+
+        Set<String> visited = new HashSet<>();
+        for (IMappingFile.IClass ca : a.getClasses()) {
+            IMappingFile.IClass cb = b.getClass(ca.getMapped());
+            visited.add(ca.getMapped());
+            String mapped = cb != null ? cb.getMapped() : missing(policy, "class", ca.getMapped(), ca.getMapped());
+            if (mapped == null) continue;
+
+            IMappingBuilder.IClass cls = builder.addClass(ca.getOriginal(), mapped);
+            Set<String> visitedFields = new HashSet<>();
+            for (IMappingFile.IField fa : ca.getFields()) {
+                IMappingFile.IField fb = cb != null ? cb.getField(fa.getMapped()) : null;
+                visitedFields.add(fa.getMapped());
+                String mappedField = fb != null ? fb.getMapped() : missing(policy, "field", ca.getMapped() + "." + fa.getMapped(), fa.getMapped());
+                if (mappedField == null) continue;
+
+                IMappingBuilder.IField field = cls.field(fa.getOriginal(), mappedField);
+                if (fa.getDescriptor() != null) {
+                    field.descriptor(fa.getDescriptor());
+                }
+            }
+            Set<String> visitedMethods = new HashSet<>();
+            for (IMappingFile.IMethod ma : ca.getMethods()) {
+                IMappingFile.IMethod mb = cb != null ? cb.getMethod(ma.getMapped(), ma.getMappedDescriptor()) : null;
+                visitedMethods.add(ma.getMapped() + ma.getMappedDescriptor());
+                String mappedMethod = mb != null ? mb.getMapped() : missing(policy, "method", ca.getMapped() + "." + ma.getMapped() + ma.getMappedDescriptor(), ma.getMapped());
+                if (mappedMethod == null) continue;
+
+                cls.method(ma.getDescriptor(), ma.getOriginal(), mappedMethod);
+            }
+
+            if (cb == null) continue;
+            // Members which a did not touch.
+            for (IMappingFile.IField fb : cb.getFields()) {
+                if (visitedFields.contains(fb.getOriginal())) continue;
+
+                IMappingBuilder.IField field = cls.field(fb.getOriginal(), fb.getMapped());
+                if (fb.getDescriptor() != null) {
+                    field.descriptor(toA.mapDesc(fb.getDescriptor()));
+                }
+            }
+            for (IMappingFile.IMethod mb : cb.getMethods()) {
+                if (visitedMethods.contains(mb.getOriginal() + mb.getDescriptor())) continue;
+
+                cls.method(toA.mapMethodDesc(mb.getDescriptor()), mb.getOriginal(), mb.getMapped());
+            }
+        }
+
+        // Classes which a did not touch.
+        for (IMappingFile.IClass cb : b.getClasses()) {
+            if (visited.contains(cb.getOriginal())) continue;
+            // The name is taken by another class in a's input namespace, it can't be unchanged by a.
+            if (a.getClass(cb.getOriginal()) != null) continue;
+
+            IMappingBuilder.IClass cls = builder.addClass(cb.getOriginal(), cb.getMapped());
+            for (IMappingFile.IField fb : cb.getFields()) {
+                IMappingBuilder.IField field = cls.field(fb.getOriginal(), fb.getMapped());
+                if (fb.getDescriptor() != null) {
+                    field.descriptor(toA.mapDesc(fb.getDescriptor()));
+                }
+            }
+            for (IMappingFile.IMethod mb : cb.getMethods()) {
+                cls.method(toA.mapMethodDesc(mb.getDescriptor()), mb.getOriginal(), mb.getMapped());
+            }
+        }
+        return builder.build().getMap("left", "right");
+    }
+
+    private static @Nullable String missing(MissingPolicy policy, String kind, String name, String identity) {
+        return switch (policy) {
+            case IDENTITY -> identity;
+            case DROP -> null;
+            case ERROR -> throw new RuntimeException("Mappings chain is missing " + kind + " " + name + " in a later hop.");
+        };
+    }
+}
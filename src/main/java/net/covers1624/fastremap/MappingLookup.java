@@ -0,0 +1,281 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The lookups {@link ASMRemapper} needs from a set of mappings, in a given direction.
+ * <p>
+ * Reversed lookups are served from an index keyed by mapped names, so {@link IMappingFile#reverse()}
+ * never has to build a second copy of the mapping model.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+interface MappingLookup {
+
+    /**
+     * @param mappings The mappings.
+     * @param reversed If lookups should map from the mapped names back to the original names.
+     * @return The lookup.
+     */
+    static MappingLookup of(IMappingFile mappings, boolean reversed) {
+        return reversed ? new Reversed(mappings) : new Forward(mappings);
+    }
+
+    /**
+     * @param cName The class name.
+     * @return The mapped name, {@code null} if the class is not in the mappings.
+     */
+    @Nullable
+    String mapClass(String cName);
+
+    /**
+     * @param owner The owning class, which must be in the mappings.
+     * @param name  The field name.
+     * @param desc  The field descriptor.
+     * @return The mapped name, {@code null} if the owner has no such field.
+     */
+    @Nullable
+    String mapField(String owner, String name, String desc);
+
+    /**
+     * @param owner The owning class, which must be in the mappings.
+     * @param name  The method name.
+     * @param desc  The method descriptor.
+     * @return The mapped name, {@code null} if the owner has no such method.
+     */
+    @Nullable
+    String mapMethod(String owner, String name, String desc);
+
+    /**
+     * Map a method by name alone, such as for annotation attributes.
+     *
+     * @param owner The owning class.
+     * @param name  The method name.
+     * @return The mapped name of the first method with that name, {@code null} if none.
+     */
+    @Nullable
+    String mapMethodName(String owner, String name);
+
+    /**
+     * Visit every class in the mappings.
+     *
+     * @param action Called with the name of the class and its mapped name.
+     */
+    void forEachClass(BiConsumer<String, String> action);
+
+    /**
+     * @return The mappings, in their original direction. May be built on first use.
+     */
+    IMappingFile getMappings();
+
+    /**
+     * @return If lookups map from the mapped names back to the original names.
+     */
+    boolean isReversed();
+
+    /**
+     * Copy these lookups into a compact {@link MappingStore}.
+     *
+     * @param keepMembers The classes to keep members for, {@code null} to keep all.
+     * @return The store.
+     */
+    MappingStore toStore(@Nullable Set<String> keepMembers);
+
+    // Some formats don't carry field descriptors, these match any descriptor.
+    private static boolean matches(String desc, @Nullable String fieldDesc) {
+        return fieldDesc == null || fieldDesc.equals(desc);
+    }
+
+    final class Forward implements MappingLookup {
+
+        private final IMappingFile mappings;
+
+        private Forward(IMappingFile mappings) {
+            this.mappings = mappings;
+        }
+
+        @Override
+        public @Nullable String mapClass(String cName) {
+            IMappingFile.IClass clazz = mappings.getClass(cName);
+            return clazz != null ? clazz.getMapped() : null;
+        }
+
+        @Override
+        public @Nullable String mapField(String owner, String name, String desc) {
+            IMappingFile.IClass clazz = mappings.getClass(owner);
+            if (clazz == null) return null;
+
+            IMappingFile.IField field = clazz.getField(name);
+            return field != null && matches(desc, field.getDescriptor()) ? field.getMapped() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethod(String owner, String name, String desc) {
+            IMappingFile.IClass clazz = mappings.getClass(owner);
+            if (clazz == null) return null;
+
+            IMappingFile.IMethod method = clazz.getMethod(name, desc);
+            return method != null ? method.getMapped() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethodName(String owner, String name) {
+            IMappingFile.IClass clazz = mappings.getClass(owner);
+            if (clazz == null) return null;
+
+            for (IMappingFile.IMethod method : clazz.getMethods()) {
+                if (method.getOriginal().equals(name)) return method.getMapped();
+            }
+            return null;
+        }
+
+        @Override
+        public void forEachClass(BiConsumer<String, String> action) {
+            for (IMappingFile.IClass clazz : mappings.getClasses()) {
+                action.accept(clazz.getOriginal(), clazz.getMapped());
+            }
+        }
+
+        @Override
+        public IMappingFile getMappings() {
+            return mappings;
+        }
+
+        @Override
+        public boolean isReversed() {
+            return false;
+        }
+
+        @Override
+        public MappingStore toStore(@Nullable Set<String> keepMembers) {
+            return MappingStore.of(mappings, false, keepMembers);
+        }
+    }
+
+    final class Reversed implements MappingLookup {
+
+        private final IMappingFile mappings;
+        private volatile @Nullable Map<String, ClassIndex> classes;
+
+        private Reversed(IMappingFile mappings) {
+            this.mappings = mappings;
+        }
+
+        private Map<String, ClassIndex> classes() {
+            Map<String, ClassIndex> classes = this.classes;
+            if (classes == null) {
+                synchronized (this) {
+                    classes = this.classes;
+                    if (classes == null) {
+                        classes = new HashMap<>();
+                        for (IMappingFile.IClass clazz : mappings.getClasses()) {
+                            classes.put(clazz.getMapped(), new ClassIndex(clazz));
+                        }
+                        this.classes = classes;
+                    }
+                }
+            }
+            return classes;
+        }
+
+        @Override
+        public @Nullable String mapClass(String cName) {
+            ClassIndex index = classes().get(cName);
+            return index != null ? index.clazz.getOriginal() : null;
+        }
+
+        @Override
+        public @Nullable String mapField(String owner, String name, String desc) {
+            ClassIndex index = classes().get(owner);
+            if (index == null) return null;
+
+            IMappingFile.IField field = index.fields().get(name);
+            return field != null && matches(desc, field.getMappedDescriptor()) ? field.getOriginal() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethod(String owner, String name, String desc) {
+            ClassIndex index = classes().get(owner);
+            if (index == null) return null;
+
+            IMappingFile.IMethod method = index.methods().get(name + desc);
+            return method != null ? method.getOriginal() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethodName(String owner, String name) {
+            ClassIndex index = classes().get(owner);
+            if (index == null) return null;
+
+            for (IMappingFile.IMethod method : index.clazz.getMethods()) {
+                if (method.getMapped().equals(name)) return method.getOriginal();
+            }
+            return null;
+        }
+
+        @Override
+        public void forEachClass(BiConsumer<String, String> action) {
+            for (IMappingFile.IClass clazz : mappings.getClasses()) {
+                action.accept(clazz.getMapped(), clazz.getOriginal());
+            }
+        }
+
+        @Override
+        public IMappingFile getMappings() {
+            return mappings;
+        }
+
+        @Override
+        public boolean isReversed() {
+            return true;
+        }
+
+        @Override
+        public MappingStore toStore(@Nullable Set<String> keepMembers) {
+            return MappingStore.of(mappings, true, keepMembers);
+        }
+
+        // Member indexes are only built for classes which are actually looked up.
+        private static final class ClassIndex {
+
+            private final IMappingFile.IClass clazz;
+            private volatile @Nullable Map<String, IMappingFile.IField> fields;
+            private volatile @Nullable Map<String, IMappingFile.IMethod> methods;
+
+            private ClassIndex(IMappingFile.IClass clazz) {
+                this.clazz = clazz;
+            }
+
+            private Map<String, IMappingFile.IField> fields() {
+                Map<String, IMappingFile.IField> fields = this.fields;
+                if (fields == null) {
+                    fields = new HashMap<>();
+                    for (IMappingFile.IField field : clazz.getFields()) {
+                        fields.put(field.getMapped(), field);
+                    }
+                    // Racing threads build identical indexes, publishing either is fine.
+                    this.fields = fields;
+                }
+                return fields;
+            }
+
+            private Map<String, IMappingFile.IMethod> methods() {
+                Map<String, IMappingFile.IMethod> methods = this.methods;
+                if (methods == null) {
+                    methods = new HashMap<>();
+                    for (IMappingFile.IMethod method : clazz.getMethods()) {
+                        methods.put(method.getMapped() + method.getMappedDescriptor(), method);
+                    }
+                    this.methods = methods;
+                }
+                return methods;
+            }
+        }
+    }
+}
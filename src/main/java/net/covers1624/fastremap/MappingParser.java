@@ -0,0 +1,318 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A parser for the common mapping formats, which builds {@link ParsedMappings} directly.
+ * <p>
+ * Supports ProGuard, TSRG and Tiny v2 files. Files are split into chunks at class lines, which
+ * are parsed in parallel. Anything else, including lines this parser doesn't understand, returns
+ * {@code null}, and the file should be loaded with {@link IMappingFile#load} instead.
+ * <p>
+ * ProGuard methods inlined from other classes ({@code 1:2:void a.b.C.method() -> d}) are skipped,
+ * their names can never match a method in the class.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class MappingParser {
+
+    // Below this, splitting the file costs more than it saves.
+    private static final int MIN_CHUNK = 256 * 1024;
+
+    private final Format format;
+    private final String text;
+
+    private MappingParser(Format format, String text) {
+        this.format = format;
+        this.text = text;
+    }
+
+    /**
+     * @param file        The mappings file.
+     * @param executor    The executor to parse chunks on, {@code null} to parse on this thread.
+     * @param parallelism The maximum number of chunks to split the file into.
+     * @return The mappings, {@code null} if the format is not supported.
+     */
+    public static @Nullable ParsedMappings load(Path file, @Nullable ExecutorService executor, int parallelism) throws IOException {
+        return parse(Files.readString(file), executor, parallelism);
+    }
+
+    /**
+     * @param text        The mappings.
+     * @param executor    The executor to parse chunks on, {@code null} to parse on this thread.
+     * @param parallelism The maximum number of chunks to split the file into.
+     * @return The mappings, {@code null} if the format is not supported.
+     */
+    public static @Nullable ParsedMappings parse(String text, @Nullable ExecutorService executor, int parallelism) throws IOException {
+        int start = skipHeader(text);
+        if (start == -1) return null;
+        MappingParser parser = new MappingParser(detect(text, start), text);
+        if (parser.format == Format.UNSUPPORTED) return null;
+
+        int chunks = executor == null ? 1 : Math.max(1, Math.min(parallelism, (text.length() - start) / MIN_CHUNK));
+        try {
+            if (chunks == 1) return new ParsedMappings(parser.parseChunk(start, text.length()));
+
+            List<Future<List<ParsedMappings.ClassEntry>>> futures = new ArrayList<>(chunks);
+            int chunkStart = start;
+            for (int i = 1; i <= chunks; i++) {
+                int chunkEnd = i == chunks ? text.length() : parser.nextClassLine(start + (int) ((long) (text.length() - start) * i / chunks));
+                if (chunkEnd <= chunkStart) continue;
+
+                int s = chunkStart;
+                futures.add(executor.submit(() -> parser.parseChunk(s, chunkEnd)));
+                chunkStart = chunkEnd;
+            }
+
+            List<ParsedMappings.ClassEntry> classes = new ArrayList<>();
+            for (Future<List<ParsedMappings.ClassEntry>> future : futures) {
+                classes.addAll(future.get());
+            }
+            return new ParsedMappings(classes);
+        } catch (Unsupported ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst parsing mappings.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Unsupported) return null;
+            throw new RuntimeException("Failed to parse mappings.", ex.getCause());
+        }
+    }
+
+    // Returns the start of the first class line, skipping comments and any Tiny header. -1 if the file is empty.
+    private static int skipHeader(String text) {
+        int pos = 0;
+        while (pos < text.length()) {
+            int end = lineEnd(text, pos);
+            if (end != pos && text.charAt(pos) != '#') {
+                if (!text.startsWith("tiny\t", pos)) return pos;
+
+                // Tiny properties are indented, and follow the header.
+                pos = nextLine(text, end);
+                while (pos < text.length() && text.charAt(pos) == '\t') {
+                    pos = nextLine(text, lineEnd(text, pos));
+                }
+                return pos;
+            }
+            pos = nextLine(text, end);
+        }
+        return -1;
+    }
+
+    private static Format detect(String text, int start) {
+        int headerEnd = lineEnd(text, 0);
+        if (text.startsWith("tiny\t2\t", 0)) {
+            // Escaped names are rare, and not worth handling here.
+            if (text.substring(0, start).contains("escaped-names")) return Format.UNSUPPORTED;
+            if (text.substring(0, headerEnd).split("\t").length < 5) return Format.UNSUPPORTED;
+            return Format.TINY2;
+        }
+
+        String line = text.substring(start, lineEnd(text, start));
+        if (line.endsWith(":") && line.contains(" -> ")) return Format.PROGUARD;
+        // SRG, CSRG, TSRG2 and Tiny v1 headers or lines all fail this.
+        String[] split = line.split(" ");
+        if (split.length == 2 && !split[0].endsWith(":") && !line.startsWith("tsrg2 ")) return Format.TSRG;
+        return Format.UNSUPPORTED;
+    }
+
+    // The start of the next class line at or after pos. Member lines are indented, comments start with #.
+    private int nextClassLine(int pos) {
+        pos = nextLine(text, lineEnd(text, pos));
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '#' && c != '\r' && c != '\n') return pos;
+            pos = nextLine(text, lineEnd(text, pos));
+        }
+        return text.length();
+    }
+
+    private List<ParsedMappings.ClassEntry> parseChunk(int start, int end) {
+        List<ParsedMappings.ClassEntry> classes = new ArrayList<>();
+        ParsedMappings.ClassEntry clazz = null;
+        int pos = start;
+        while (pos < end) {
+            int lineEnd = lineEnd(text, pos);
+            String line = text.substring(pos, lineEnd);
+            pos = nextLine(text, lineEnd);
+            if (line.isBlank() || line.charAt(0) == '#') continue;
+
+            boolean member = line.charAt(0) == ' ' || line.charAt(0) == '\t';
+            if (!member) {
+                clazz = parseClass(line);
+                if (clazz != null) {
+                    classes.add(clazz);
+                }
+                continue;
+            }
+            if (clazz == null) throw new Unsupported();
+            parseMember(clazz, line);
+        }
+        return classes;
+    }
+
+    private @Nullable ParsedMappings.ClassEntry parseClass(String line) {
+        switch (format) {
+            case PROGUARD -> {
+                int arrow = line.indexOf(" -> ");
+                if (arrow == -1 || !line.endsWith(":")) throw new Unsupported();
+                return new ParsedMappings.ClassEntry(
+                        line.substring(0, arrow).replace('.', '/'),
+                        line.substring(arrow + 4, line.length() - 1).replace('.', '/')
+                );
+            }
+            case TSRG -> {
+                String[] split = line.split(" ");
+                if (split.length != 2) throw new Unsupported();
+                // Package mappings, not used for remapping.
+                if (split[0].endsWith("/")) return null;
+                return new ParsedMappings.ClassEntry(split[0], split[1]);
+            }
+            case TINY2 -> {
+                String[] split = line.split("\t", -1);
+                if (!split[0].equals("c") || split.length < 3) throw new Unsupported();
+                return new ParsedMappings.ClassEntry(split[1], orElse(split[2], split[1]));
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    private void parseMember(ParsedMappings.ClassEntry clazz, String line) {
+        switch (format) {
+            case PROGUARD -> parseProguardMember(clazz, line.trim());
+            case TSRG -> {
+                if (line.startsWith("\t\t")) throw new Unsupported();
+                String[] split = line.trim().split(" ");
+                if (split.length == 2) {
+                    clazz.addField(split[0], split[1], null);
+                } else if (split.length == 3 && split[1].startsWith("(")) {
+                    clazz.addMethod(split[0], split[2], split[1]);
+                } else {
+                    throw new Unsupported();
+                }
+            }
+            case TINY2 -> {
+                // Parameters, locals and comments.
+                if (line.startsWith("\t\t") || line.startsWith("\tc\t")) return;
+
+                String[] split = line.split("\t", -1);
+                if (split.length < 5) throw new Unsupported();
+                String mapped = orElse(split[4], split[3]);
+                switch (split[1]) {
+                    case "f" -> clazz.addField(split[3], mapped, split[2]);
+                    case "m" -> clazz.addMethod(split[3], mapped, split[2]);
+                    default -> throw new Unsupported();
+                }
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    // [start:end:]type name[(args)[:origStart:origEnd]] -> mapped
+    private static void parseProguardMember(ParsedMappings.ClassEntry clazz, String line) {
+        if (line.startsWith("#")) return;
+
+        int arrow = line.indexOf(" -> ");
+        if (arrow == -1) throw new Unsupported();
+        String mapped = line.substring(arrow + 4);
+
+        int paren = line.indexOf('(');
+        if (paren == -1 || paren > arrow) {
+            int space = line.indexOf(' ');
+            if (space == -1 || space >= arrow) throw new Unsupported();
+            clazz.addField(line.substring(space + 1, arrow), mapped, toDesc(line.substring(0, space)));
+            return;
+        }
+
+        // Skip line numbers.
+        int start = 0;
+        while (Character.isDigit(line.charAt(start))) {
+            start = line.indexOf(':', start) + 1;
+            if (start == 0) throw new Unsupported();
+        }
+        int space = line.lastIndexOf(' ', paren);
+        int close = line.indexOf(')', paren);
+        if (space < start || close == -1 || close > arrow) throw new Unsupported();
+
+        String name = line.substring(space + 1, paren);
+        if (name.indexOf('.') != -1) return;
+
+        StringBuilder desc = new StringBuilder("(");
+        if (close > paren + 1) {
+            for (String arg : line.substring(paren + 1, close).split(",")) {
+                desc.append(toDesc(arg));
+            }
+        }
+        desc.append(')').append(toDesc(line.substring(start, space)));
+        clazz.addMethod(name, mapped, desc.toString());
+    }
+
+    // Converts a Java source type, such as java.lang.String[], to a descriptor.
+    private static String toDesc(String type) {
+        int dims = 0;
+        while (type.endsWith("[]")) {
+            type = type.substring(0, type.length() - 2);
+            dims++;
+        }
+        String desc = switch (type) {
+            case "byte" -> "B";
+            case "char" -> "C";
+            case "double" -> "D";
+            case "float" -> "F";
+            case "int" -> "I";
+            case "long" -> "J";
+            case "short" -> "S";
+            case "boolean" -> "Z";
+            case "void" -> "V";
+            default -> "L" + type.replace('.', '/') + ";";
+        };
+        return "[".repeat(dims) + desc;
+    }
+
+    private static String orElse(String str, String other) {
+        return str.isEmpty() ? other : str;
+    }
+
+    // The end of the line starting at pos, excluding any line terminator.
+    private static int lineEnd(String text, int pos) {
+        int end = text.indexOf('\n', pos);
+        if (end == -1) end = text.length();
+        if (end > pos && text.charAt(end - 1) == '\r') end--;
+        return end;
+    }
+
+    // The start of the line after the given line end.
+    private static int nextLine(String text, int lineEnd) {
+        if (lineEnd < text.length() && text.charAt(lineEnd) == '\r') lineEnd++;
+        return Math.min(text.length(), lineEnd + 1);
+    }
+
+    private enum Format {
+        PROGUARD,
+        TSRG,
+        TINY2,
+        UNSUPPORTED,
+    }
+
+    // Thrown on anything this parser doesn't understand, the caller falls back to SrgUtils.
+    private static final class Unsupported extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A compact, read-only {@link MappingLookup}, built for a single direction.
+ * <p>
+ * Names and descriptors are interned into one string table, classes and members are rows of
+ * int arrays referencing it. Members are stored contiguously per class, sorted by name, so a
+ * member lookup is a binary search. This is an order of magnitude smaller than an
+ * {@link IMappingFile}, which keeps an object and several maps per class and member.
+ * <p>
+ * Member tables may be pruned to the classes an input can actually reach, class names are always kept.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class MappingStore implements MappingLookup {
+
+    private static final int NO_DESC = -1;
+
+    private final boolean reversed;
+    private final String[] strings;
+
+    private final int[] classNames;
+    private final int[] classMapped;
+    // Open addressing, class index + 1, 0 is empty.
+    private final int[] classTable;
+
+    // Members of class i are at [start[i], start[i + 1]).
+    private final int[] fieldStart;
+    private final int[] fieldNames;
+    private final int[] fieldMapped;
+    private final int[] fieldDescs;
+    private final int[] methodStart;
+    private final int[] methodNames;
+    private final int[] methodMapped;
+    private final int[] methodDescs;
+
+    private MappingStore(Builder builder) {
+        reversed = builder.reversed;
+        strings = builder.strings.toArray(new String[0]);
+
+        int classes = builder.classNames.size();
+        classNames = builder.classNames.toArray();
+        classMapped = builder.classMapped.toArray();
+        classTable = new int[tableSize(classes)];
+        for (int i = 0; i < classes; i++) {
+            int mask = classTable.length - 1;
+            int slot = strings[classNames[i]].hashCode() & mask;
+            while (classTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            classTable[slot] = i + 1;
+        }
+
+        fieldStart = builder.fieldStart.toArray();
+        fieldNames = builder.fieldNames.toArray();
+        fieldMapped = builder.fieldMapped.toArray();
+        fieldDescs = builder.fieldDescs.toArray();
+        methodStart = builder.methodStart.toArray();
+        methodNames = builder.methodNames.toArray();
+        methodMapped = builder.methodMapped.toArray();
+        methodDescs = builder.methodDescs.toArray();
+    }
+
+    /**
+     * @param mappings    The mappings.
+     * @param reversed    If lookups should map from the mapped names back to the original names.
+     * @param keepMembers The classes to keep members for, {@code null} to keep all.
+     * @return The store.
+     */
+    static MappingStore of(IMappingFile mappings, boolean reversed, @Nullable Set<String> keepMembers) {
+        Builder builder = new Builder(reversed);
+        for (IMappingFile.IClass clazz : mappings.getClasses()) {
+            String name = reversed ? clazz.getMapped() : clazz.getOriginal();
+            builder.addClass(name, reversed ? clazz.getOriginal() : clazz.getMapped());
+            if (keepMembers != null && !keepMembers.contains(name)) continue;
+
+            for (IMappingFile.IField field : clazz.getFields()) {
+                if (reversed) {
+                    builder.addField(field.getMapped(), field.getOriginal(), field.getMappedDescriptor());
+                } else {
+                    builder.addField(field.getOriginal(), field.getMapped(), field.getDescriptor());
+                }
+            }
+            for (IMappingFile.IMethod method : clazz.getMethods()) {
+                if (reversed) {
+                    builder.addMethod(method.getMapped(), method.getOriginal(), method.getMappedDescriptor());
+                } else {
+                    builder.addMethod(method.getOriginal(), method.getMapped(), method.getDescriptor());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static int tableSize(int entries) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, entries) * 2 - 1) << 1);
+    }
+
+    private int findClass(String cName) {
+        int mask = classTable.length - 1;
+        int slot = cName.hashCode() & mask;
+        while (true) {
+            int idx = classTable[slot] - 1;
+            if (idx == -1) return -1;
+            if (strings[classNames[idx]].equals(cName)) return idx;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // The first member in [from, to) with the given name, -1 if none.
+    private int findMember(int[] names, int from, int to, String name) {
+        int lo = from;
+        int hi = to - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = strings[names[mid]].compareTo(name);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                if (cmp == 0) found = mid;
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public @Nullable String mapClass(String cName) {
+        int idx = findClass(cName);
+        return idx != -1 ? strings[classMapped[idx]] : null;
+    }
+
+    @Override
+    public @Nullable String mapField(String owner, String name, String desc) {
+        int idx = findClass(owner);
+        if (idx == -1) return null;
+
+        int field = findMember(fieldNames, fieldStart[idx], fieldStart[idx + 1], name);
+        if (field == -1) return null;
+
+        // Some formats don't carry field descriptors, these match any descriptor.
+        int fieldDesc = fieldDescs[field];
+        return fieldDesc == NO_DESC || strings[fieldDesc].equals(desc) ? strings[fieldMapped[field]] : null;
+    }
+
+    @Override
+    public @Nullable String mapMethod(String owner, String name, String desc) {
+        int idx = findClass(owner);
+        if (idx == -1) return null;
+
+        int end = methodStart[idx + 1];
+        int method = findMember(methodNames, methodStart[idx], end, name);
+        if (method == -1) return null;
+
+        // Overloads are adjacent.
+        for (; method < end && strings[methodNames[method]].equals(name); method++) {
+            if (strings[methodDescs[method]].equals(desc)) return strings[methodMapped[method]];
+        }
+        return null;
+    }
+
+    @Override
+    public @Nullable String mapMethodName(String owner, String name) {
+        int idx = findClass(owner);
+        if (idx == -1) return null;
+
+        int method = findMember(methodNames, methodStart[idx], methodStart[idx + 1], name);
+        return method != -1 ? strings[methodMapped[method]] : null;
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<String, String> action) {
+        for (int i = 0; i < classNames.length; i++) {
+            action.accept(strings[classNames[i]], strings[classMapped[i]]);
+        }
+    }
+
+    @Override
+    public IMappingFile getMappings() {
+        // Rebuilt in the original direction, mapped descriptors are mapped back through the class table.
+        IMappingBuilder builder = IMappingBuilder.create("left", "right");
+        for (int i = 0; i < classNames.length; i++) {
+            String name = strings[classNames[i]];
+            String mapped = strings[classMapped[i]];
+            IMappingBuilder.IClass clazz = reversed ? builder.addClass(mapped, name) : builder.addClass(name, mapped);
+            for (int j = fieldStart[i]; j < fieldStart[i + 1]; j++) {
+                IMappingBuilder.IField field = reversed
+                        ? clazz.field(strings[fieldMapped[j]], strings[fieldNames[j]])
+                        : clazz.field(strings[fieldNames[j]], strings[fieldMapped[j]]);
+                if (fieldDescs[j] != NO_DESC) {
+                    field.descriptor(originalDesc(strings[fieldDescs[j]]));
+                }
+            }
+            for (int j = methodStart[i]; j < methodStart[i + 1]; j++) {
+                String desc = originalDesc(strings[methodDescs[j]]);
+                if (reversed) {
+                    clazz.method(desc, strings[methodMapped[j]], strings[methodNames[j]]);
+                } else {
+                    clazz.method(desc, strings[methodNames[j]], strings[methodMapped[j]]);
+                }
+            }
+        }
+        return builder.build().getMap("left", "right");
+    }
+
+    private String originalDesc(String desc) {
+        if (!reversed || desc.indexOf('L') == -1) return desc;
+
+        StringBuilder sb = new StringBuilder(desc.length());
+        int last = 0;
+        int start = desc.indexOf('L');
+        while (start != -1) {
+            int end = desc.indexOf(';', start);
+            String cName = desc.substring(start + 1, end);
+            String mapped = mapClass(cName);
+            sb.append(desc, last, start + 1).append(mapped != null ? mapped : cName);
+            last = end;
+            start = desc.indexOf('L', end);
+        }
+        return sb.append(desc, last, desc.length()).toString();
+    }
+
+    @Override
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    @Override
+    public MappingStore toStore(@Nullable Set<String> keepMembers) {
+        return this;
+    }
+
+    public int getClassCount() {
+        return classNames.length;
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public int getMethodCount() {
+        return methodNames.length;
+    }
+
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    /**
+     * Builds a {@link MappingStore}. Classes are added in order, each followed by its members,
+     * already in the store's direction.
+     */
+    static final class Builder {
+
+        private final boolean reversed;
+        private final Map<String, Integer> interned = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Set<String> classes = new HashSet<>();
+
+        private final IntList classNames = new IntList();
+        private final IntList classMapped = new IntList();
+        private final IntList fieldStart = new IntList();
+        private final IntList fieldNames = new IntList();
+        private final IntList fieldMapped = new IntList();
+        private final IntList fieldDescs = new IntList();
+        private final IntList methodStart = new IntList();
+        private final IntList methodNames = new IntList();
+        private final IntList methodMapped = new IntList();
+        private final IntList methodDescs = new IntList();
+
+        // If the current class is a duplicate, its members are ignored.
+        private boolean skipMembers;
+
+        Builder(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        public Builder addClass(String name, String mapped) {
+            if (!classNames.isEmpty()) {
+                finishClass();
+            }
+            // Duplicates are ignored, the first wins.
+            skipMembers = !classes.add(name);
+            if (skipMembers) return this;
+
+            classNames.add(intern(name));
+            classMapped.add(intern(mapped));
+            fieldStart.add(fieldNames.size());
+            methodStart.add(methodNames.size());
+            return this;
+        }
+
+        public Builder addField(String name, String mapped, @Nullable String desc) {
+            if (skipMembers) return this;
+
+            fieldNames.add(intern(name));
+            fieldMapped.add(intern(mapped));
+            fieldDescs.add(desc != null ? intern(desc) : NO_DESC);
+            return this;
+        }
+
+        public Builder addMethod(String name, String mapped, String desc) {
+            if (skipMembers) return this;
+
+            methodNames.add(intern(name));
+            methodMapped.add(intern(mapped));
+            methodDescs.add(intern(desc));
+            return this;
+        }
+
+        public MappingStore build() {
+            if (!classNames.isEmpty()) {
+                finishClass();
+            }
+            fieldStart.add(fieldNames.size());
+            methodStart.add(methodNames.size());
+            return new MappingStore(this);
+        }
+
+        private int intern(String str) {
+            Integer idx = interned.get(str);
+            if (idx == null) {
+                idx = strings.size();
+                interned.put(str, idx);
+                strings.add(str);
+            }
+            return idx;
+        }
+
+        // Sort the last class's members by name, keeping file order between overloads.
+        private void finishClass() {
+            if (skipMembers) return;
+
+            int cls = classNames.size() - 1;
+            sortMembers(fieldStart.get(cls), fieldNames, fieldMapped, fieldDescs);
+            sortMembers(methodStart.get(cls), methodNames, methodMapped, methodDescs);
+        }
+
+        private void sortMembers(int from, IntList names, IntList mapped, IntList descs) {
+            int to = names.size();
+            if (to - from < 2) return;
+
+            Integer[] order = new Integer[to - from];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = from + i;
+            }
+            // Stable.
+            Arrays.sort(order, Comparator.comparing(i -> strings.get(names.get(i))));
+
+            int[] n = new int[order.length];
+            int[] m = new int[order.length];
+            int[] d = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                n[i] = names.get(order[i]);
+                m[i] = mapped.get(order[i]);
+                d[i] = descs.get(order[i]);
+            }
+            for (int i = 0; i < order.length; i++) {
+                names.set(from + i, n[i]);
+                mapped.set(from + i, m[i]);
+                descs.set(from + i, d[i]);
+            }
+        }
+    }
+
+    private static final class IntList {
+
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int idx) {
+            return data[idx];
+        }
+
+        void set(int idx, int value) {
+            data[idx] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
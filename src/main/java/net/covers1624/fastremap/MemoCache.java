@@ -0,0 +1,97 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe memo of a pure function.
+ * <p>
+ * Once full, the memo is cleared wholesale rather than evicting individual entries.
+ * Descriptors repeat heavily within a jar, so the working set is refilled quickly,
+ * and lookups don't pay for any LRU bookkeeping. The number of clears is reported
+ * with the stats, a memo which is cleared repeatedly is too small for the jar.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class MemoCache {
+
+    private final int maxSize;
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+
+    MemoCache(int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("Expected a max size of at least 1.");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the memoized result for the given key, computing it if absent.
+     * <p>
+     * The function is not called under any lock, it may be called more than
+     * once for the same key when racing, and may itself use this memo.
+     *
+     * @param key  The key.
+     * @param func The function to compute the result.
+     * @return The result.
+     */
+    public String get(String key, Function<String, String> func) {
+        String value = cache.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = func.apply(key);
+        if (cache.size() >= maxSize) {
+            cache.clear();
+            clears.increment();
+        }
+        cache.put(key, value);
+        return value;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of times this memo has filled, and been cleared.
+     */
+    public long getClears() {
+        return clears.sum();
+    }
+
+    /**
+     * Format hit statistics for a set of memos.
+     *
+     * @param caches The memos.
+     * @return The summary, {@code null} if they were never queried.
+     */
+    static @Nullable String formatStats(MemoCache... caches) {
+        long hits = 0;
+        long misses = 0;
+        long clears = 0;
+        for (MemoCache cache : caches) {
+            hits += cache.getHits();
+            misses += cache.getMisses();
+            clears += cache.getClears();
+        }
+        long total = hits + misses;
+        if (total == 0) return null;
+        return String.format("%d hits, %d misses (%.1f%% hit ratio), cleared %d times", hits, misses, hits * 100D / total, clears);
+    }
+}
@@ -0,0 +1,122 @@
+package net.covers1624.fastremap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Receives the remapped entries.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Write an entry.
+     *
+     * @param name The name of the entry.
+     * @param data The bytes of the entry.
+     */
+    void write(String name, byte[] data) throws IOException;
+
+    /**
+     * A zip file, on any {@link java.nio.file.FileSystem}.
+     *
+     * @param zip The path to write the zip to.
+     * @return The sink.
+     */
+    static OutputSink toZip(Path zip) throws IOException {
+        return toZip(new BufferedOutputStream(Files.newOutputStream(zip)));
+    }
+
+    /**
+     * A zip file written to a stream.
+     * <p>
+     * The stream is closed when the sink is closed.
+     *
+     * @param os The stream.
+     * @return The sink.
+     */
+    static OutputSink toZip(OutputStream os) {
+        return new ZipOutputSink(os);
+    }
+
+    /**
+     * A zip file holding only the entries which changed since a previous output.
+     * <p>
+     * Entries are compared by SHA-256 against the hash list of the previous output, or by CRC-32
+     * and size against its central directory if it has no hash list. Entries of the previous output
+     * which are not written at all are listed, one per line, in {@code META-INF/fastremap/removed.txt}.
+     *
+     * @param zip      The path to write the zip to.
+     * @param previous A previous, complete, output.
+     * @return The sink.
+     */
+    static OutputSink toDeltaZip(Path zip, Path previous) throws IOException {
+        Map<String, ZipReader.Entry> baseline = new LinkedHashMap<>();
+        Map<String, String> hashes = null;
+        try (ZipReader reader = ZipReader.open(previous)) {
+            for (ZipReader.Entry entry : reader.getEntries()) {
+                baseline.put(entry.name(), entry);
+            }
+            ZipReader.Entry hashList = baseline.get(ZipOutputSink.HASH_LIST);
+            if (hashList != null) {
+                hashes = ZipOutputSink.readHashes(reader.read(hashList));
+            }
+        }
+        return new ZipOutputSink(new BufferedOutputStream(Files.newOutputStream(zip)), baseline, hashes);
+    }
+
+    /**
+     * Write each entry as a file in the given directory, in parallel.
+     * <p>
+     * Existing files with identical content are not rewritten.
+     *
+     * @param dir The directory.
+     * @return The sink.
+     */
+    static OutputSink toDirectory(Path dir) throws IOException {
+        return new DirectoryOutputSink(dir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Collect entries into the given map.
+     *
+     * @param entries The map.
+     * @return The sink.
+     */
+    static OutputSink toMap(Map<String, byte[]> entries) {
+        return new OutputSink() {
+            @Override
+            public void write(String name, byte[] data) {
+                entries.put(name, data);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Discard all entries.
+     *
+     * @return The sink.
+     */
+    static OutputSink discard() {
+        return new OutputSink() {
+            @Override
+            public void write(String name, byte[] data) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,262 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Mappings parsed straight into lookup tables by {@link MappingParser}, without an {@link IMappingFile}.
+ * <p>
+ * Forward member tables are filled by the parser threads as each class is parsed. Reversed tables,
+ * and the mapped descriptors they need, are only built for classes which are actually looked up.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ParsedMappings {
+
+    // In file order, duplicates of a class are ignored.
+    private final List<ClassEntry> classes;
+    private final Map<String, ClassEntry> byOriginal;
+    private volatile @Nullable Map<String, ClassEntry> byMapped;
+    private volatile @Nullable IMappingFile mappingFile;
+
+    ParsedMappings(List<ClassEntry> parsed) {
+        byOriginal = new HashMap<>(parsed.size() * 2);
+        classes = new ArrayList<>(parsed.size());
+        for (ClassEntry clazz : parsed) {
+            if (byOriginal.putIfAbsent(clazz.original, clazz) == null) {
+                classes.add(clazz);
+            }
+        }
+    }
+
+    /**
+     * @param reversed If lookups should map from the mapped names back to the original names.
+     * @return The lookup.
+     */
+    public MappingLookup lookup(boolean reversed) {
+        return new Lookup(reversed);
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * @return These mappings as an {@link IMappingFile}, built on first use.
+     */
+    public IMappingFile toMappingFile() {
+        IMappingFile mappingFile = this.mappingFile;
+        if (mappingFile == null) {
+            synchronized (this) {
+                mappingFile = this.mappingFile;
+                if (mappingFile == null) {
+                    IMappingBuilder builder = IMappingBuilder.create("left", "right");
+                    for (ClassEntry clazz : classes) {
+                        IMappingBuilder.IClass cls = builder.addClass(clazz.original, clazz.mapped);
+                        for (Member field : clazz.fields) {
+                            IMappingBuilder.IField f = cls.field(field.original(), field.mapped());
+                            if (field.desc() != null) {
+                                f.descriptor(field.desc());
+                            }
+                        }
+                        for (Member method : clazz.methods) {
+                            cls.method(method.desc(), method.original(), method.mapped());
+                        }
+                    }
+                    mappingFile = builder.build().getMap("left", "right");
+                    this.mappingFile = mappingFile;
+                }
+            }
+        }
+        return mappingFile;
+    }
+
+    private Map<String, ClassEntry> byMapped() {
+        Map<String, ClassEntry> byMapped = this.byMapped;
+        if (byMapped == null) {
+            synchronized (this) {
+                byMapped = this.byMapped;
+                if (byMapped == null) {
+                    byMapped = new HashMap<>(classes.size() * 2);
+                    for (ClassEntry clazz : classes) {
+                        byMapped.put(clazz.mapped, clazz);
+                    }
+                    this.byMapped = byMapped;
+                }
+            }
+        }
+        return byMapped;
+    }
+
+    // Map the class names in a descriptor to their mapped names.
+    private String mapDesc(String desc) {
+        int start = desc.indexOf('L');
+        if (start == -1) return desc;
+
+        StringBuilder sb = new StringBuilder(desc.length());
+        int last = 0;
+        while (start != -1) {
+            int end = desc.indexOf(';', start);
+            String cName = desc.substring(start + 1, end);
+            ClassEntry clazz = byOriginal.get(cName);
+            sb.append(desc, last, start + 1).append(clazz != null ? clazz.mapped : cName);
+            last = end;
+            start = desc.indexOf('L', end);
+        }
+        return sb.append(desc, last, desc.length()).toString();
+    }
+
+    private final class Lookup implements MappingLookup {
+
+        private final boolean reversed;
+
+        private Lookup(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        private @Nullable ClassEntry get(String cName) {
+            if (!reversed) return byOriginal.get(cName);
+
+            ClassEntry clazz = byMapped().get(cName);
+            return clazz != null ? clazz.reversed(ParsedMappings.this) : null;
+        }
+
+        @Override
+        public @Nullable String mapClass(String cName) {
+            ClassEntry clazz = get(cName);
+            return clazz != null ? clazz.mapped : null;
+        }
+
+        @Override
+        public @Nullable String mapField(String owner, String name, String desc) {
+            ClassEntry clazz = get(owner);
+            if (clazz == null) return null;
+
+            Member field = clazz.fieldsByName.get(name);
+            // Some formats don't carry field descriptors, these match any descriptor.
+            return field != null && (field.desc() == null || field.desc().equals(desc)) ? field.mapped() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethod(String owner, String name, String desc) {
+            ClassEntry clazz = get(owner);
+            if (clazz == null) return null;
+
+            Member method = clazz.methodsByKey.get(name + desc);
+            return method != null ? method.mapped() : null;
+        }
+
+        @Override
+        public @Nullable String mapMethodName(String owner, String name) {
+            ClassEntry clazz = get(owner);
+            if (clazz == null) return null;
+
+            for (Member method : clazz.methods) {
+                if (method.original().equals(name)) return method.mapped();
+            }
+            return null;
+        }
+
+        @Override
+        public void forEachClass(BiConsumer<String, String> action) {
+            for (ClassEntry clazz : classes) {
+                if (reversed) {
+                    action.accept(clazz.mapped, clazz.original);
+                } else {
+                    action.accept(clazz.original, clazz.mapped);
+                }
+            }
+        }
+
+        @Override
+        public IMappingFile getMappings() {
+            return toMappingFile();
+        }
+
+        @Override
+        public boolean isReversed() {
+            return reversed;
+        }
+
+        @Override
+        public MappingStore toStore(@Nullable Set<String> keepMembers) {
+            MappingStore.Builder builder = new MappingStore.Builder(reversed);
+            for (ClassEntry clazz : classes) {
+                // Reversed entries are only built for kept classes.
+                String name = reversed ? clazz.mapped : clazz.original;
+                boolean keep = keepMembers == null || keepMembers.contains(name);
+                ClassEntry entry = reversed && keep ? clazz.reversed(ParsedMappings.this) : clazz;
+                builder.addClass(name, reversed ? clazz.original : clazz.mapped);
+                if (!keep) continue;
+
+                for (Member field : entry.fields) {
+                    builder.addField(field.original(), field.mapped(), field.desc());
+                }
+                for (Member method : entry.methods) {
+                    builder.addMethod(method.original(), method.mapped(), method.desc());
+                }
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * A class and its members, filled by a single parser thread.
+     */
+    static final class ClassEntry {
+
+        final String original;
+        final String mapped;
+        private final List<Member> fields = new ArrayList<>();
+        private final List<Member> methods = new ArrayList<>();
+        private final Map<String, Member> fieldsByName = new HashMap<>();
+        // Keyed by name + descriptor.
+        private final Map<String, Member> methodsByKey = new HashMap<>();
+        private volatile @Nullable ClassEntry reversed;
+
+        ClassEntry(String original, String mapped) {
+            this.original = original;
+            this.mapped = mapped;
+        }
+
+        void addField(String original, String mapped, @Nullable String desc) {
+            Member field = new Member(original, mapped, desc);
+            if (fieldsByName.putIfAbsent(original, field) == null) {
+                fields.add(field);
+            }
+        }
+
+        void addMethod(String original, String mapped, String desc) {
+            Member method = new Member(original, mapped, desc);
+            if (methodsByKey.putIfAbsent(original + desc, method) == null) {
+                methods.add(method);
+            }
+        }
+
+        private ClassEntry reversed(ParsedMappings mappings) {
+            ClassEntry reversed = this.reversed;
+            if (reversed == null) {
+                reversed = new ClassEntry(mapped, original);
+                for (Member field : fields) {
+                    reversed.addField(field.mapped(), field.original(), field.desc() != null ? mappings.mapDesc(field.desc()) : null);
+                }
+                for (Member method : methods) {
+                    reversed.addMethod(method.mapped(), method.original(), mappings.mapDesc(method.desc()));
+                }
+                // Racing threads build identical entries, publishing either is fine.
+                this.reversed = reversed;
+            }
+            return reversed;
+        }
+    }
+
+    private record Member(String original, String mapped, @Nullable String desc) { }
+}
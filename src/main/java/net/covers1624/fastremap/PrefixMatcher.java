@@ -0,0 +1,160 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Matches slash-separated paths against a set of prefix rules, compiled into a trie.
+ * <p>
+ * A rule matches a path if the path starts with the rule. Rules may contain globs:
+ * <ul>
+ *     <li>{@code ?} matches any single character, except a separator.</li>
+ *     <li>{@code *} matches zero or more characters, except a separator.</li>
+ *     <li>{@code **} matches zero or more characters, including separators.</li>
+ * </ul>
+ * Matching does not allocate, and for literal rules is a single walk of the trie,
+ * regardless of how many rules exist.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class PrefixMatcher {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root;
+    private final boolean dotSeparators;
+    private final boolean empty;
+
+    private PrefixMatcher(Node root, boolean dotSeparators, boolean empty) {
+        this.root = root;
+        this.dotSeparators = dotSeparators;
+        this.empty = empty;
+    }
+
+    /**
+     * Compile the given rules.
+     *
+     * @param rules         The rules.
+     * @param dotSeparators If {@code .} should be treated the same as {@code /}, both in rules and paths.
+     *                      Used for class name style rules such as {@code com.google.}.
+     * @return The matcher.
+     */
+    public static PrefixMatcher compile(Collection<String> rules, boolean dotSeparators) {
+        Node root = new Node();
+        boolean empty = true;
+        for (String rule : rules) {
+            if (rule.isEmpty()) continue;
+            empty = false;
+
+            Node node = root;
+            for (int i = 0; i < rule.length(); i++) {
+                char c = rule.charAt(i);
+                if (c == '*') {
+                    if (i + 1 < rule.length() && rule.charAt(i + 1) == '*') {
+                        i++;
+                        if (node.globstar == null) node.globstar = new Node();
+                        node = node.globstar;
+                    } else {
+                        if (node.star == null) node.star = new Node();
+                        node = node.star;
+                    }
+                } else if (c == '?') {
+                    if (node.any == null) node.any = new Node();
+                    node = node.any;
+                } else {
+                    node = node.getOrAdd(dotSeparators && c == '.' ? '/' : c);
+                }
+            }
+            node.terminal = true;
+        }
+        return new PrefixMatcher(root, dotSeparators, empty);
+    }
+
+    /**
+     * @return If this matcher has no rules, and will never match anything.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @param path The path.
+     * @return If any rule matches the start of the path.
+     */
+    public boolean matches(String path) {
+        if (empty) return false;
+        return matches(root, path, 0);
+    }
+
+    private boolean matches(Node node, String path, int i) {
+        int len = path.length();
+        while (true) {
+            if (node.terminal) return true;
+
+            if (node.globstar != null) {
+                for (int k = i; k <= len; k++) {
+                    if (matches(node.globstar, path, k)) return true;
+                }
+            }
+            if (node.star != null) {
+                for (int k = i; k <= len; k++) {
+                    if (matches(node.star, path, k)) return true;
+                    if (k < len && charAt(path, k) == '/') break;
+                }
+            }
+            if (i == len) return false;
+
+            char c = charAt(path, i);
+            if (node.any != null && c != '/' && matches(node.any, path, i + 1)) return true;
+
+            Node next = node.get(c);
+            if (next == null) return false;
+            node = next;
+            i++;
+        }
+    }
+
+    private char charAt(String path, int i) {
+        char c = path.charAt(i);
+        return dotSeparators && c == '.' ? '/' : c;
+    }
+
+    private static final class Node {
+
+        // Literal children, keys are kept sorted for binary search.
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_NODES;
+
+        private @Nullable Node any;
+        private @Nullable Node star;
+        private @Nullable Node globstar;
+        private boolean terminal;
+
+        private @Nullable Node get(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        private Node getOrAdd(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) return children[idx];
+
+            idx = -idx - 1;
+            Node node = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newKeys[idx] = c;
+            newChildren[idx] = node;
+            System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+}
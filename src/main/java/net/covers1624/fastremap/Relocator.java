@@ -0,0 +1,110 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Relocates class names by prefix rules, such as {@code com/google/ -> shaded/com/google/}.
+ * <p>
+ * Rules are compiled into a prefix trie, a lookup is a single walk over the name
+ * which picks the longest matching rule. Rules are plain prefix matches, end them
+ * with a {@code /} to only match whole packages. Both {@code .} and {@code /} are
+ * accepted as separators.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class Relocator {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    static final Relocator NONE = new Relocator(Map.of());
+
+    private final Node root = new Node();
+    private final List<String> prefixes = new ArrayList<>();
+
+    /**
+     * @param rules The prefixes to relocate, to their replacements.
+     */
+    Relocator(Map<String, String> rules) {
+        for (Map.Entry<String, String> entry : rules.entrySet()) {
+            String from = entry.getKey().replace('.', '/');
+            if (from.isEmpty()) throw new IllegalArgumentException("Relocation prefix must not be empty.");
+
+            Node node = root;
+            for (int i = 0; i < from.length(); i++) {
+                node = node.getOrAdd(from.charAt(i));
+            }
+            node.target = entry.getValue().replace('.', '/');
+            prefixes.add(from);
+        }
+    }
+
+    public boolean isEmpty() {
+        return prefixes.isEmpty();
+    }
+
+    /**
+     * @return The prefixes of all rules, in internal form.
+     */
+    public List<String> getPrefixes() {
+        return Collections.unmodifiableList(prefixes);
+    }
+
+    /**
+     * @param cName The internal class name.
+     * @return The relocated name, or the given name if no rule matches.
+     */
+    public String relocate(String cName) {
+        Node node = root;
+        String target = null;
+        int matched = 0;
+        for (int i = 0; i < cName.length(); i++) {
+            node = node.get(cName.charAt(i));
+            if (node == null) break;
+            if (node.target != null) {
+                target = node.target;
+                matched = i + 1;
+            }
+        }
+        if (target == null) return cName;
+        return target + cName.substring(matched);
+    }
+
+    private static final class Node {
+
+        // Children, keys are kept sorted for binary search.
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_NODES;
+        private @Nullable String target;
+
+        private @Nullable Node get(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        private Node getOrAdd(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) return children[idx];
+
+            idx = -idx - 1;
+            Node node = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newKeys[idx] = c;
+            newChildren[idx] = node;
+            System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Java agent entry point, remaps classes of an obfuscated jar as the JVM defines them.
+ * <p>
+ * Usage: {@code -javaagent:FastRemapper.jar=mappings=<file>,jar=<obf jar>[,flip][,all-fixers][,verbose]}
+ * <p>
+ * Classes are requested by their remapped names. {@link RemappingClassLoader} resolves these back to
+ * entries of the obfuscated jar, and {@link RemapTransformer} remaps their bytes as they are defined.
+ * To load classes from the jar without any other launcher, use
+ * {@code -Djava.system.class.loader=net.covers1624.fastremap.RemappingClassLoader}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+public final class RemapAgent {
+
+    private static volatile @Nullable RemapTransformer transformer;
+
+    private RemapAgent() {
+    }
+
+    public static void premain(String args, Instrumentation inst) throws IOException {
+        agentmain(args, inst);
+    }
+
+    public static synchronized void agentmain(String args, Instrumentation inst) throws IOException {
+        if (transformer != null) throw new IllegalStateException("Agent already installed.");
+
+        Map<String, String> opts = parseArgs(args);
+        String mappingsPath = opts.get("mappings");
+        String jarPath = opts.get("jar");
+        if (mappingsPath == null || jarPath == null) {
+            throw new IllegalArgumentException("Expected agent arguments 'mappings=<file>,jar=<obf jar>[,flip][,all-fixers][,verbose]'. Got: " + args);
+        }
+
+        PrintStream logger = System.err;
+        IMappingFile mappings;
+        try (InputStream is = Files.newInputStream(Path.of(mappingsPath))) {
+            mappings = IMappingFile.load(is);
+        }
+
+        FastRemapper.Builder builder = FastRemapper.builder()
+                .logger(logger)
+                .verbose(opts.containsKey("verbose"));
+        if (opts.containsKey("all-fixers")) {
+            builder.allFixers();
+        }
+        FastRemapper engine = builder.build();
+
+        RemapInput input = engine.load(InputSource.ofZip(Path.of(jarPath)));
+        // Anything outside the jar, such as the JDK or libraries, is found on the classpath.
+        input.setHierarchyFallback(cName -> {
+            try (InputStream is = ClassLoader.getSystemResourceAsStream(cName + ".class")) {
+                return is != null ? is.readAllBytes() : null;
+            } catch (IOException ex) {
+                return null;
+            }
+        });
+
+        RemapTransformer transformer = new RemapTransformer(logger, engine, new ASMRemapper(input, mappings, opts.containsKey("flip")));
+        inst.addTransformer(transformer);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> transformer.dumpMetrics(logger), "FastRemapper Agent Metrics"));
+        RemapAgent.transformer = transformer;
+        logger.println("FastRemapper agent installed, remapping " + jarPath);
+    }
+
+    /**
+     * @return The installed transformer, {@code null} if the agent is not installed.
+     */
+    static @Nullable RemapTransformer getTransformer() {
+        return transformer;
+    }
+
+    private static Map<String, String> parseArgs(@Nullable String args) {
+        Map<String, String> opts = new HashMap<>();
+        if (args == null) return opts;
+
+        for (String arg : args.split(",")) {
+            int idx = arg.indexOf('=');
+            if (idx == -1) {
+                opts.put(arg.trim(), "");
+            } else {
+                opts.put(arg.substring(0, idx).trim(), arg.substring(idx + 1).trim());
+            }
+        }
+        return opts;
+    }
+}
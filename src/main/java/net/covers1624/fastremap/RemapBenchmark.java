@@ -0,0 +1,132 @@
+package net.covers1624.fastremap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static net.covers1624.fastremap.FastRemapper.formatDuration;
+
+/**
+ * Repeatedly runs a remap pass and reports timing, allocation and GC statistics.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemapBenchmark {
+
+    private final PrintStream logger;
+    private final int warmup;
+    private final int iterations;
+
+    RemapBenchmark(PrintStream logger, int warmup, int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Expected at least 1 iteration.");
+        this.logger = logger;
+        this.warmup = Math.max(0, warmup);
+        this.iterations = iterations;
+    }
+
+    public void run(Pass pass) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            logger.printf("Warmup %d/%d..\n", i + 1, warmup);
+            pass.run(OutputStream.nullOutputStream());
+        }
+
+        long[] times = new long[iterations];
+        long[] allocated = new long[iterations];
+        long[] gcTimes = new long[iterations];
+        long[] gcCounts = new long[iterations];
+        int classes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long startAlloc = allocatedBytes();
+            long startGcTime = gcTime();
+            long startGcCount = gcCount();
+            long start = System.nanoTime();
+            classes = pass.run(OutputStream.nullOutputStream());
+            times[i] = System.nanoTime() - start;
+            allocated[i] = startAlloc >= 0 ? allocatedBytes() - startAlloc : -1;
+            gcTimes[i] = startGcTime >= 0 ? gcTime() - startGcTime : -1;
+            gcCounts[i] = startGcCount >= 0 ? gcCount() - startGcCount : -1;
+            logger.printf("Iteration %d/%d: %s\n", i + 1, iterations, formatDuration(times[i]));
+        }
+
+        Arrays.sort(times);
+        Arrays.sort(allocated);
+        Arrays.sort(gcTimes);
+        Arrays.sort(gcCounts);
+        long median = percentile(times, 50);
+        logger.println();
+        logger.printf("Benchmark: %d iterations, %d warmup, %d classes per iteration.\n", iterations, warmup, classes);
+        logger.printf(" Min       : %s\n", formatDuration(times[0]));
+        logger.printf(" Median    : %s\n", formatDuration(median));
+        logger.printf(" p95       : %s\n", formatDuration(percentile(times, 95)));
+        logger.printf(" Max       : %s\n", formatDuration(times[times.length - 1]));
+        logger.printf(" Throughput: %.1f classes/s (median)\n", classes / (median / 1_000_000_000D));
+        if (allocated[0] >= 0) {
+            logger.printf(" Allocated : %.2f MiB/iteration (median)\n", percentile(allocated, 50) / (1024D * 1024D));
+        } else {
+            logger.println(" Allocated : unsupported by this JVM");
+        }
+        if (gcTimes[0] >= 0) {
+            logger.printf(" GC time   : %dms/iteration, %d collections (median)\n", percentile(gcTimes, 50), percentile(gcCounts, 50));
+        } else {
+            logger.println(" GC time   : unsupported by this JVM");
+        }
+    }
+
+    // Nearest-rank percentile over a sorted array.
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100D * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long allocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx)) return -1;
+        if (!mx.isThreadAllocatedMemorySupported()) return -1;
+        if (!mx.isThreadAllocatedMemoryEnabled()) {
+            mx.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        // Sum across all threads, so that work done off the main thread is counted.
+        long total = 0;
+        for (long allocated : mx.getThreadAllocatedBytes(mx.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    // Accumulated collection time in milliseconds across all collectors, -1 if unavailable.
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long time = gc.getCollectionTime();
+            if (time < 0) return -1;
+            total += time;
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = gc.getCollectionCount();
+            if (count < 0) return -1;
+            total += count;
+        }
+        return total;
+    }
+
+    interface Pass {
+
+        /**
+         * Run a single remap pass.
+         *
+         * @param out The stream to write the output zip to.
+         * @return The number of classes remapped.
+         */
+        int run(OutputStream out) throws IOException;
+    }
+}
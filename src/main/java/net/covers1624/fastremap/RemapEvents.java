@@ -0,0 +1,97 @@
+package net.covers1624.fastremap;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events emitted by FastRemapper.
+ * <p>
+ * These are only committed when a recording has them enabled, otherwise
+ * they cost next to nothing, unlike {@code --verbose}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemapEvents {
+
+    private RemapEvents() {
+    }
+
+    /**
+     * Spans a single phase of a remap run, loading mappings, reading input, etc.
+     */
+    @Name("net.covers1624.fastremap.Phase")
+    @Label("Remap Phase")
+    @Category("FastRemapper")
+    @StackTrace(false)
+    static final class Phase extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        Phase(String phase) {
+            this.phase = phase;
+        }
+
+        static Phase start(String phase) {
+            Phase event = new Phase(phase);
+            event.begin();
+            return event;
+        }
+    }
+
+    /**
+     * Spans the remapping of a single class, from parse to serialized bytes.
+     */
+    @Name("net.covers1624.fastremap.RemapClass")
+    @Label("Remap Class")
+    @Category("FastRemapper")
+    @StackTrace(false)
+    static final class RemapClass extends Event {
+
+        @Label("Class Name")
+        String className;
+
+        @Label("Mapped Name")
+        String mappedName;
+
+        @Label("Input Size")
+        @DataAmount
+        int inputSize;
+
+        @Label("Output Size")
+        @DataAmount
+        int outputSize;
+    }
+
+    /**
+     * Emitted when the remapper has to parse a class to find its direct super types.
+     */
+    @Name("net.covers1624.fastremap.HierarchyMiss")
+    @Label("Hierarchy Miss")
+    @Category("FastRemapper")
+    @StackTrace(false)
+    static final class HierarchyMiss extends Event {
+
+        @Label("Class Name")
+        String className;
+
+        @Label("Found")
+        @Description("If the class existed in the input.")
+        boolean found;
+    }
+
+    /**
+     * Spans the re-parse of a class by the {@link LocalVariableFixer} to compute method depths.
+     */
+    @Name("net.covers1624.fastremap.MethodDepth")
+    @Label("Compute Method Depth")
+    @Category("FastRemapper")
+    @StackTrace(false)
+    static final class MethodDepth extends Event {
+
+        @Label("Owner")
+        String owner;
+
+        @Label("Method")
+        String method;
+    }
+}
@@ -0,0 +1,309 @@
+package net.covers1624.fastremap;
+
+import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the loaded entries of a single input, and everything computed from them
+ * which does not depend on the mappings. Such as the class hierarchy, and method depths.
+ * <p>
+ * Once loaded, this is thread-safe.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+public final class RemapInput implements Closeable {
+
+    private static final String[] EMPTY = new String[0];
+
+    private final PrintStream logger;
+    private final @Nullable SpillStore spillStore;
+    private final @Nullable EntryReader reader;
+    private final @Nullable RereadStore rereadStore;
+    private final boolean headersOnly;
+
+    private final List<String> names;
+    private final Map<String, FileData> entries = new ConcurrentHashMap<>();
+    private final Map<String, String[]> hierarchy = new ConcurrentHashMap<>();
+    private final Map<String, Integer> methodDepth = new ConcurrentHashMap<>();
+
+    private volatile @Nullable ClassLocator hierarchyFallback;
+
+    /**
+     * Create an empty input, which logs nothing and keeps everything on the heap.
+     */
+    public RemapInput() {
+        this(new PrintStream(OutputStream.nullOutputStream()), null, false);
+    }
+
+    /**
+     * @param headersOnly If only class headers should be parsed, leaving their member lists empty.
+     *                    For when nothing needs them, see {@link FileData.ClassFileData#createHeader}.
+     */
+    RemapInput(PrintStream logger, @Nullable SpillStore spillStore, boolean headersOnly) {
+        this.logger = logger;
+        this.spillStore = spillStore;
+        this.headersOnly = headersOnly;
+        reader = null;
+        rereadStore = null;
+        names = new ArrayList<>();
+    }
+
+    private RemapInput(PrintStream logger, EntryReader reader, long heapBudget, boolean headersOnly) {
+        this.logger = logger;
+        this.reader = reader;
+        rereadStore = heapBudget > 0 ? new RereadStore(reader, heapBudget) : null;
+        this.headersOnly = headersOnly;
+        spillStore = null;
+        names = reader.getNames();
+    }
+
+    /**
+     * Create an input backed by the given reader, such as a zip, entries are read on first use.
+     * <p>
+     * The reader is closed when the input is closed.
+     *
+     * @param logger      The logger.
+     * @param reader      The reader.
+     * @param heapBudget  The number of bytes of loaded entries to keep on the heap, entries past this are
+     *                    read again each time they are required. {@code -1} to keep everything.
+     * @param headersOnly If only class headers should be parsed.
+     * @return The input.
+     */
+    static RemapInput open(PrintStream logger, EntryReader reader, long heapBudget, boolean headersOnly) {
+        return new RemapInput(logger, reader, heapBudget, headersOnly);
+    }
+
+    /**
+     * Add an entry to this input.
+     * <p>
+     * Must not be called concurrently, or for inputs backed by a zip.
+     *
+     * @param name  The name of the entry.
+     * @param bytes The bytes of the entry. These must not be modified after being added.
+     */
+    public void addEntry(String name, byte[] bytes) throws IOException {
+        addEntry(name, parse(name, bytes, store(bytes)));
+    }
+
+    /**
+     * Parse an entry for this input, may be called from any thread.
+     *
+     * @param name    The name of the entry.
+     * @param bytes   The bytes of the entry.
+     * @param content The content of the entry, from {@link #store}.
+     * @return The entry.
+     */
+    FileData parse(String name, byte[] bytes, FileData.Content content) {
+        return FileData.create(name, bytes, content, headersOnly);
+    }
+
+    /**
+     * Add an already parsed entry to this input.
+     * <p>
+     * Must not be called concurrently, or for lazily loaded inputs.
+     *
+     * @param name The name of the entry.
+     * @param data The entry, its content must come from {@link #store}.
+     */
+    void addEntry(String name, FileData data) {
+        if (reader != null) throw new IllegalStateException("Can't add entries to a lazily loaded input.");
+
+        if (entries.put(name, data) == null) {
+            names.add(name);
+        }
+    }
+
+    /**
+     * Store the content of an entry, spilling it to disk if this input is over budget.
+     * <p>
+     * Must not be called concurrently.
+     *
+     * @param bytes The bytes of the entry.
+     * @return The content.
+     */
+    FileData.Content store(byte[] bytes) throws IOException {
+        return spillStore != null ? spillStore.store(bytes) : FileData.Content.of(bytes);
+    }
+
+    /**
+     * @return The names of all entries in this input, in order.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Get an entry, loading it if required.
+     *
+     * @param name The name of the entry.
+     * @return The entry, or {@code null} if it does not exist.
+     */
+    public @Nullable FileData getEntry(String name) throws IOException {
+        FileData data = entries.get(name);
+        if (data != null || reader == null) return data;
+
+        byte[] bytes = reader.read(name);
+        if (bytes == null) return null;
+
+        FileData.Content content = rereadStore != null ? rereadStore.store(name, bytes) : FileData.Content.of(bytes);
+        data = parse(name, bytes, content);
+        FileData existing = entries.putIfAbsent(name, data);
+        return existing != null ? existing : data;
+    }
+
+    private @Nullable FileData getEntryUnchecked(String name) {
+        try {
+            return getEntry(name);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to read entry " + name, ex);
+        }
+    }
+
+    /**
+     * Set where to find classes which are not part of this input, when resolving the class hierarchy.
+     *
+     * @param locator The locator.
+     */
+    public void setHierarchyFallback(@Nullable ClassLocator locator) {
+        hierarchyFallback = locator;
+    }
+
+    @Nullable
+    SpillStore getSpillStore() {
+        return spillStore;
+    }
+
+    public byte @Nullable [] getClassBytes(String cName) {
+        var data = getEntryUnchecked(cName + ".class");
+        return data != null ? data.data() : null;
+    }
+
+    public @Nullable FileData.ClassFileData getClassData(String cName) {
+        var data = getEntryUnchecked(cName + ".class");
+        return data instanceof FileData.ClassFileData cData ? cData : null;
+    }
+
+    /**
+     * Get the direct super types of the given class, its super class followed by its interfaces.
+     *
+     * @param cName The class.
+     * @return The direct super types. Empty if the class does not exist in this input.
+     */
+    public String[] getDirectSuperTypes(String cName) {
+        String[] directSuperTypes = hierarchy.get(cName);
+        if (directSuperTypes != null) return directSuperTypes;
+
+        var event = new RemapEvents.HierarchyMiss();
+        event.begin();
+        byte[] bytes = getClassBytes(cName);
+        ClassLocator fallback = hierarchyFallback;
+        if (bytes == null && fallback != null) {
+            bytes = fallback.find(cName);
+        }
+        directSuperTypes = bytes != null ? extractSupertypes(new ClassReader(bytes)) : EMPTY;
+        if (event.shouldCommit()) {
+            event.className = cName;
+            event.found = bytes != null;
+            event.commit();
+        }
+
+        hierarchy.put(cName, directSuperTypes);
+        return directSuperTypes;
+    }
+
+    public void collectDirectSupertypes(ClassReader reader) {
+        hierarchy.putIfAbsent(reader.getClassName(), extractSupertypes(reader));
+    }
+
+    private static String[] extractSupertypes(ClassReader reader) {
+        String superName = reader.getSuperName();
+        String[] interfaces = reader.getInterfaces();
+
+        // No super, just return interfaces.
+        if (superName == null) return interfaces;
+        // No interfaces, just return the super
+        if (interfaces.length == 0) return new String[] { superName };
+        String[] parents = new String[interfaces.length + 1];
+        parents[0] = superName;
+        System.arraycopy(interfaces, 0, parents, 1, interfaces.length);
+        return parents;
+    }
+
+    public void storeMethodDepth(String owner, String name, String desc, int depth) {
+        methodDepth.put(owner + "." + name + desc, depth);
+    }
+
+    public int getMethodDepth(String owner, String method) {
+        String key = owner + "." + method;
+        Integer depth = methodDepth.get(key);
+        if (depth == null) {
+            depth = computeMethodDepth(owner, method);
+        }
+        return depth;
+    }
+
+    private int computeMethodDepth(String owner, String method) {
+        byte[] bytes = getClassBytes(owner);
+        if (bytes == null) {
+            logger.println("Unable to compute used locals for missing class+method: " + owner + "." + method);
+            return 1;
+        }
+
+        var event = new RemapEvents.MethodDepth();
+        event.begin();
+        ClassReader reader = new ClassReader(bytes);
+        // Tell the LocalVariableFixer to visit the class, this will trigger it to update the methodDepth for each method.
+        reader.accept(new LocalVariableFixer(null, this), 0);
+        if (event.shouldCommit()) {
+            event.owner = owner;
+            event.method = method;
+            event.commit();
+        }
+        return methodDepth.getOrDefault(owner + "." + method, 1);
+    }
+
+    public Type[] getCtorParams(String owner) {
+        if (owner.equals("java/lang/Object")) return new Type[0];
+        var data = getClassData(owner);
+        if (data == null) {
+            logger.println("Unable to compute ctor params for missing class: " + owner);
+            return new Type[0];
+        }
+        return FastStream.of(data.methods())
+                .filter(e -> e.name().equals("<init>"))
+                .map(e -> e.desc().getArgumentTypes())
+                .lastOrDefault(new Type[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillStore != null) {
+            spillStore.close();
+        }
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Finds the bytes of classes outside an input.
+     */
+    @FunctionalInterface
+    public interface ClassLocator {
+
+        /**
+         * @param cName The internal name of the class.
+         * @return The class bytes, {@code null} if the class could not be found.
+         */
+        byte @Nullable [] find(String cName);
+    }
+}
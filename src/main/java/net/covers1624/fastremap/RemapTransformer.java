@@ -0,0 +1,107 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remaps classes of the agent's input as they are defined.
+ * <p>
+ * The JVM asks for classes by their remapped names, these are mapped back to the
+ * input's names to find them. The shared {@link ASMRemapper} is thread-safe, so
+ * classes may be defined concurrently.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemapTransformer implements ClassFileTransformer {
+
+    private final PrintStream logger;
+    private final FastRemapper engine;
+    private final ASMRemapper remapper;
+    // Remapped name -> input name.
+    private final Map<String, String> unmapped = new HashMap<>();
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    RemapTransformer(PrintStream logger, FastRemapper engine, ASMRemapper remapper) {
+        this.logger = logger;
+        this.engine = engine;
+        this.remapper = remapper;
+        remapper.getLookup().forEachClass((cName, mapped) -> unmapped.put(mapped, cName));
+    }
+
+    /**
+     * Map a remapped class name back to the name in the input.
+     *
+     * @param cName The remapped internal name.
+     * @return The input's name.
+     */
+    public String unmap(String cName) {
+        return unmapped.getOrDefault(cName, cName);
+    }
+
+    /**
+     * Map an input class name to the remapped name.
+     *
+     * @param cName The input's internal name.
+     * @return The remapped name.
+     */
+    public String map(String cName) {
+        return remapper.map(cName);
+    }
+
+    /**
+     * Get the un-remapped bytes of a class, by its remapped name.
+     *
+     * @param cName The remapped internal name.
+     * @return The bytes, {@code null} if the class is not part of the input.
+     */
+    public byte @Nullable [] findInputClass(String cName) {
+        return remapper.getInput().getClassBytes(unmap(cName));
+    }
+
+    @Override
+    public byte @Nullable [] transform(@Nullable ClassLoader loader, @Nullable String className, @Nullable Class<?> classBeingRedefined, @Nullable ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (className == null || classBeingRedefined != null) return null;
+
+        // The class is being defined with its input name, which we would rename, the JVM won't allow that.
+        if (!map(className).equals(className)) return null;
+
+        String inputName = unmap(className);
+        if (remapper.getInput().getClassData(inputName) == null) return null;
+
+        long start = System.nanoTime();
+        try {
+            return engine.remapClass(remapper, FileData.ClassFileData.create(classfileBuffer));
+        } catch (Throwable ex) {
+            // Exceptions thrown from transformers are swallowed by the JVM, at least make some noise.
+            logger.println("FastRemapper agent failed to remap " + className);
+            ex.printStackTrace(logger);
+            return null;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            count.increment();
+            totalNanos.add(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    void dumpMetrics(PrintStream out) {
+        long classes = count.sum();
+        long total = totalNanos.sum();
+        out.printf("FastRemapper agent remapped %d classes in %s (avg %s, max %s)\n",
+                classes,
+                FastRemapper.formatDuration(total),
+                FastRemapper.formatDuration(classes == 0 ? 0 : total / classes),
+                FastRemapper.formatDuration(maxNanos.get())
+        );
+    }
+}
@@ -0,0 +1,240 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+
+/**
+ * A read-only view of a jar, as if it had been remapped.
+ * <p>
+ * Only the entry names are remapped up front, which is a single mapping lookup per class.
+ * Class files are remapped on first read and kept in a bounded cache. The class hierarchy
+ * is resolved from the underlying input as required.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemappedFileSystem extends FileSystem {
+
+    private final RemappedFileSystemProvider provider = new RemappedFileSystemProvider();
+    private final FastRemapper engine;
+    private final ASMRemapper remapper;
+    private final RemappedPath root = new RemappedPath(this, "/");
+    private final FileStore store = new Store();
+
+    // Remapped entry name -> input entry name.
+    private final Map<String, String> files = new HashMap<>();
+    // Directory -> sorted children names. Root is the empty string.
+    private final Map<String, SortedSet<String>> directories = new HashMap<>();
+
+    private final HotCache<String> cache;
+
+    private volatile boolean open = true;
+
+    RemappedFileSystem(FastRemapper engine, ASMRemapper remapper, long cacheBudget) {
+        this.engine = engine;
+        this.remapper = remapper;
+        cache = new HotCache<>(cacheBudget);
+
+        directories.put("", new TreeSet<>());
+        for (String name : remapper.getInput().getNames()) {
+            String mapped = engine.mapEntryName(remapper, name);
+            if (mapped == null || mapped.endsWith("/")) continue;
+
+            if (files.putIfAbsent(mapped, name) == null) {
+                addToParent(mapped);
+            }
+        }
+    }
+
+    private void addToParent(String name) {
+        int idx = name.lastIndexOf('/');
+        String parent = idx == -1 ? "" : name.substring(0, idx);
+        SortedSet<String> children = directories.get(parent);
+        boolean newDir = children == null;
+        if (newDir) {
+            children = new TreeSet<>();
+            directories.put(parent, children);
+        }
+        children.add(name.substring(idx + 1));
+        if (newDir) {
+            addToParent(parent);
+        }
+    }
+
+    boolean exists(RemappedPath path) {
+        String name = path.entryName();
+        return files.containsKey(name) || directories.containsKey(name);
+    }
+
+    boolean isDirectory(RemappedPath path) {
+        return directories.containsKey(path.entryName());
+    }
+
+    @Nullable
+    SortedSet<String> list(RemappedPath path) {
+        return directories.get(path.entryName());
+    }
+
+    /**
+     * Get the remapped bytes of the given file, remapping it if required.
+     *
+     * @param path The path.
+     * @return The bytes, {@code null} if the file does not exist.
+     */
+    byte @Nullable [] read(RemappedPath path) throws IOException {
+        ensureOpen();
+        String name = path.entryName();
+        String inputName = files.get(name);
+        if (inputName == null) return null;
+
+        byte[] bytes = cache.get(name);
+        if (bytes != null) return bytes;
+
+        // Remapped outside the lock, concurrent readers of different classes shouldn't block each other.
+        bytes = engine.processSingle(remapper, inputName);
+        if (bytes == null) throw new NoSuchFileException(path.toString());
+        return cache.put(name, bytes);
+    }
+
+    void ensureOpen() {
+        if (!open) throw new ClosedFileSystemException();
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) return;
+        open = false;
+        cache.clear();
+        remapper.getInput().close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(root);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of(store);
+    }
+
+    FileStore getFileStore() {
+        return store;
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) return new RemappedPath(this, first);
+
+        StringBuilder sb = new StringBuilder(first);
+        for (String seg : more) {
+            if (seg.isEmpty()) continue;
+            if (sb.length() > 0) sb.append('/');
+            sb.append(seg);
+        }
+        return new RemappedPath(this, sb.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        // Our paths are always '/' separated, delegate to the default provider's glob and regex support.
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        return path -> matcher.matches(Path.of(path.toString()));
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class Store extends FileStore {
+
+        @Override
+        public String name() {
+            return RemappedFileSystemProvider.SCHEME;
+        }
+
+        @Override
+        public String type() {
+            return RemappedFileSystemProvider.SCHEME;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        // Nothing can be written, so there is no space.
+        @Override
+        public long getTotalSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUsableSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            return 0;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return type == BasicFileAttributeView.class;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return name.equals("basic");
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> @Nullable V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            throw new UnsupportedOperationException("No file store attributes are supported.");
+        }
+    }
+}
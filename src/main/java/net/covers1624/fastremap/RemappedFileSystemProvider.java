@@ -0,0 +1,352 @@
+package net.covers1624.fastremap;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.Function;
+
+/**
+ * The provider for {@link RemappedFileSystem}s.
+ * <p>
+ * These file systems are only created via {@link FastRemapper#newFileSystem}, so this
+ * is not registered as an installed provider.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemappedFileSystemProvider extends FileSystemProvider {
+
+    static final String SCHEME = "fastremap";
+
+    private static final FileTime EPOCH = FileTime.fromMillis(0);
+    // In the order returned for '*'.
+    private static final Map<String, Function<BasicFileAttributes, Object>> BASIC_ATTRIBUTES = new LinkedHashMap<>();
+
+    static {
+        BASIC_ATTRIBUTES.put("lastModifiedTime", BasicFileAttributes::lastModifiedTime);
+        BASIC_ATTRIBUTES.put("lastAccessTime", BasicFileAttributes::lastAccessTime);
+        BASIC_ATTRIBUTES.put("creationTime", BasicFileAttributes::creationTime);
+        BASIC_ATTRIBUTES.put("size", BasicFileAttributes::size);
+        BASIC_ATTRIBUTES.put("isRegularFile", BasicFileAttributes::isRegularFile);
+        BASIC_ATTRIBUTES.put("isDirectory", BasicFileAttributes::isDirectory);
+        BASIC_ATTRIBUTES.put("isSymbolicLink", BasicFileAttributes::isSymbolicLink);
+        BASIC_ATTRIBUTES.put("isOther", BasicFileAttributes::isOther);
+        BASIC_ATTRIBUTES.put("fileKey", BasicFileAttributes::fileKey);
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        throw new UnsupportedOperationException("Use FastRemapper.newFileSystem");
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        throw new UnsupportedOperationException("Use FastRemapper.newFileSystem");
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        throw new UnsupportedOperationException("Use FastRemapper.newFileSystem");
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) throw new ReadOnlyFileSystemException();
+        }
+        RemappedPath p = check(path);
+        byte[] bytes = p.getFileSystem().read(p);
+        if (bytes == null) {
+            if (p.getFileSystem().isDirectory(p)) throw new FileSystemException(path.toString(), null, "Is a directory");
+            throw new NoSuchFileException(path.toString());
+        }
+        return new ByteArrayChannel(bytes);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        RemappedPath p = check(dir);
+        p.getFileSystem().ensureOpen();
+        SortedSet<String> children = p.getFileSystem().list(p);
+        if (children == null) {
+            if (p.getFileSystem().exists(p)) throw new NotDirectoryException(dir.toString());
+            throw new NoSuchFileException(dir.toString());
+        }
+        return new DirectoryStream<>() {
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) throw new IllegalStateException("Already iterated.");
+                iterated = true;
+                return children.stream()
+                        .map(e -> p.resolve(e))
+                        .filter(e -> {
+                            try {
+                                return filter.accept(e);
+                            } catch (IOException ex) {
+                                throw new DirectoryIteratorException(ex);
+                            }
+                        })
+                        .iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) {
+        return check(path).toAbsolutePath().normalize().equals(path2.toAbsolutePath().normalize());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        RemappedPath p = check(path);
+        p.getFileSystem().ensureOpen();
+        if (!p.getFileSystem().exists(p)) throw new NoSuchFileException(path.toString());
+        return p.getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        RemappedPath p = check(path);
+        p.getFileSystem().ensureOpen();
+        if (!p.getFileSystem().exists(p)) throw new NoSuchFileException(path.toString());
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) throw new AccessDeniedException(path.toString());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        RemappedPath p = check(path);
+        if (type != BasicFileAttributeView.class) return null;
+
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return RemappedFileSystemProvider.this.readAttributes(p, BasicFileAttributes.class);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        RemappedPath p = check(path);
+        if (type != BasicFileAttributes.class) throw new UnsupportedOperationException("Only BasicFileAttributes are supported.");
+        p.getFileSystem().ensureOpen();
+        if (!p.getFileSystem().exists(p)) throw new NoSuchFileException(path.toString());
+
+        boolean directory = p.getFileSystem().isDirectory(p);
+        return (A) new BasicFileAttributes() {
+            @Override
+            public FileTime lastModifiedTime() {
+                return EPOCH;
+            }
+
+            @Override
+            public FileTime lastAccessTime() {
+                return EPOCH;
+            }
+
+            @Override
+            public FileTime creationTime() {
+                return EPOCH;
+            }
+
+            @Override
+            public boolean isRegularFile() {
+                return !directory;
+            }
+
+            @Override
+            public boolean isDirectory() {
+                return directory;
+            }
+
+            @Override
+            public boolean isSymbolicLink() {
+                return false;
+            }
+
+            @Override
+            public boolean isOther() {
+                return false;
+            }
+
+            @Override
+            public long size() {
+                if (directory) return 0;
+                // The size of a remapped class is only known once it has been remapped.
+                try {
+                    byte[] bytes = p.getFileSystem().read(p);
+                    return bytes != null ? bytes.length : 0;
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to remap " + p, ex);
+                }
+            }
+
+            @Override
+            public Object fileKey() {
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        int idx = attributes.indexOf(':');
+        String view = idx == -1 ? "basic" : attributes.substring(0, idx);
+        if (!view.equals("basic")) throw new UnsupportedOperationException("Only the basic attribute view is supported, got: " + view);
+
+        List<String> names = List.of(attributes.substring(idx + 1).split(","));
+        for (String name : names) {
+            if (!name.equals("*") && !BASIC_ATTRIBUTES.containsKey(name)) throw new IllegalArgumentException("Unknown attribute: " + name);
+        }
+        BasicFileAttributes attrs = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> values = new LinkedHashMap<>();
+        // Only what's asked for, size requires the file to be remapped.
+        for (Map.Entry<String, Function<BasicFileAttributes, Object>> entry : BASIC_ATTRIBUTES.entrySet()) {
+            if (names.contains("*") || names.contains(entry.getKey())) {
+                values.put(entry.getKey(), entry.getValue().apply(attrs));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    private static RemappedPath check(Path path) {
+        if (!(path instanceof RemappedPath p)) throw new ProviderMismatchException();
+        return p;
+    }
+
+    private static final class ByteArrayChannel implements SeekableByteChannel {
+
+        private final byte[] bytes;
+        private int pos;
+        private boolean open = true;
+
+        private ByteArrayChannel(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (pos >= bytes.length) return -1;
+
+            int len = Math.min(dst.remaining(), bytes.length - pos);
+            dst.put(bytes, pos, len);
+            pos += len;
+            return len;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return pos;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) throw new IllegalArgumentException("Negative position.");
+            pos = (int) Math.min(newPosition, bytes.length);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return bytes.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!open) throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Path} within a {@link RemappedFileSystem}.
+ * <p>
+ * Paths are plain {@code /} separated strings, absolute paths start with {@code /}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RemappedPath implements Path {
+
+    private final RemappedFileSystem fs;
+    private final String path;
+
+    RemappedPath(RemappedFileSystem fs, String path) {
+        this.fs = fs;
+        this.path = clean(path);
+    }
+
+    private static String clean(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        char last = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\0') throw new InvalidPathException(path, "Nul character not allowed.");
+            if (c == '/' && last == '/') continue;
+            sb.append(c);
+            last = c;
+        }
+        if (sb.length() > 1 && last == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The zip entry name for this path, without the leading {@code /}.
+     */
+    String entryName() {
+        String abs = ((RemappedPath) toAbsolutePath().normalize()).path;
+        return abs.substring(1);
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (String seg : path.split("/")) {
+            if (!seg.isEmpty()) {
+                names.add(seg);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public RemappedFileSystem getFileSystem() {
+        return fs;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith("/");
+    }
+
+    @Override
+    public @Nullable Path getRoot() {
+        return isAbsolute() ? new RemappedPath(fs, "/") : null;
+    }
+
+    @Override
+    public @Nullable Path getFileName() {
+        if (path.isEmpty()) return this;
+        if (path.equals("/")) return null;
+
+        return new RemappedPath(fs, path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    @Override
+    public @Nullable Path getParent() {
+        int idx = path.lastIndexOf('/');
+        if (idx == -1 || path.equals("/")) return null;
+        if (idx == 0) return new RemappedPath(fs, "/");
+
+        return new RemappedPath(fs, path.substring(0, idx));
+    }
+
+    @Override
+    public int getNameCount() {
+        if (path.isEmpty()) return 1;
+        return names().size();
+    }
+
+    @Override
+    public Path getName(int index) {
+        List<String> names = names();
+        if (index < 0 || index >= names.size()) throw new IllegalArgumentException("Index out of range: " + index);
+        return new RemappedPath(fs, names.get(index));
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        List<String> names = names();
+        if (beginIndex < 0 || endIndex > names.size() || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid range: " + beginIndex + " -> " + endIndex);
+        }
+        return new RemappedPath(fs, String.join("/", names.subList(beginIndex, endIndex)));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof RemappedPath o) || o.fs != fs) return false;
+        if (o.isAbsolute() != isAbsolute()) return false;
+
+        List<String> names = names();
+        List<String> otherNames = o.names();
+        return otherNames.size() <= names.size() && names.subList(0, otherNames.size()).equals(otherNames);
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof RemappedPath o) || o.fs != fs) return false;
+        if (o.isAbsolute()) return o.path.equals(path);
+
+        List<String> names = names();
+        List<String> otherNames = o.names();
+        return otherNames.size() <= names.size() && names.subList(names.size() - otherNames.size(), names.size()).equals(otherNames);
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> out = new ArrayList<>();
+        for (String name : names()) {
+            if (name.equals(".")) continue;
+            if (name.equals("..") && !out.isEmpty() && !out.get(out.size() - 1).equals("..")) {
+                out.remove(out.size() - 1);
+                continue;
+            }
+            if (name.equals("..") && isAbsolute()) continue;
+            out.add(name);
+        }
+        return new RemappedPath(fs, (isAbsolute() ? "/" : "") + String.join("/", out));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        RemappedPath o = check(other);
+        if (o.isAbsolute()) return o;
+        if (o.path.isEmpty()) return this;
+        if (path.isEmpty()) return o;
+
+        return new RemappedPath(fs, path + "/" + o.path);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        RemappedPath o = check(other);
+        if (o.isAbsolute() != isAbsolute()) throw new IllegalArgumentException("Can't relativize absolute and relative paths.");
+
+        List<String> names = names();
+        List<String> otherNames = o.names();
+        int common = 0;
+        while (common < names.size() && common < otherNames.size() && names.get(common).equals(otherNames.get(common))) {
+            common++;
+        }
+        List<String> out = new ArrayList<>();
+        for (int i = common; i < names.size(); i++) {
+            out.add("..");
+        }
+        out.addAll(otherNames.subList(common, otherNames.size()));
+        return new RemappedPath(fs, String.join("/", out));
+    }
+
+    @Override
+    public URI toUri() {
+        return URI.create(RemappedFileSystemProvider.SCHEME + ":" + toAbsolutePath());
+    }
+
+    @Override
+    public RemappedPath toAbsolutePath() {
+        return isAbsolute() ? this : new RemappedPath(fs, "/" + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws NoSuchFileException {
+        RemappedPath real = (RemappedPath) toAbsolutePath().normalize();
+        if (!fs.exists(real)) throw new NoSuchFileException(toString());
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(check(other).path);
+    }
+
+    private RemappedPath check(Path other) {
+        if (!(other instanceof RemappedPath o) || o.fs != fs) throw new ProviderMismatchException();
+        return o;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof RemappedPath other)) return false;
+
+        return other.fs == fs && other.path.equals(path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,31 @@
+package net.covers1624.fastremap;
+
+/**
+ * A class loader which finds classes of the {@link RemapAgent}'s jar by their remapped names.
+ * <p>
+ * Classes are defined with the input's bytes, {@link RemapTransformer} remaps them as they are defined.
+ * May be used as the system class loader via {@code -Djava.system.class.loader}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+public class RemappingClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    public RemappingClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        RemapTransformer transformer = RemapAgent.getTransformer();
+        if (transformer == null) throw new ClassNotFoundException(name);
+
+        byte[] bytes = transformer.findInputClass(name.replace('.', '/'));
+        if (bytes == null) throw new ClassNotFoundException(name);
+
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,69 @@
+package net.covers1624.fastremap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The lazily loaded counterpart to {@link SpillStore}, for inputs which can be read again on demand.
+ * <p>
+ * Loaded entries are kept on the heap up to a fixed budget, anything past that is read from the input
+ * again each time it's required, through a {@link HotCache} of recently read entries. The input itself
+ * takes the place of the spill file.
+ * <p>
+ * Unlike {@link SpillStore}, this is filled concurrently, as entries are loaded by the remap workers.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class RereadStore {
+
+    private final EntryReader reader;
+    private final long residentBudget;
+    private final AtomicLong resident = new AtomicLong();
+    private final HotCache<String> hot;
+
+    /**
+     * @param reader The reader to read entries again from.
+     * @param budget The total number of bytes this store may keep on the heap.
+     */
+    RereadStore(EntryReader reader, long budget) {
+        this.reader = reader;
+        // Split the same as SpillStore.
+        residentBudget = budget - budget / 4;
+        hot = new HotCache<>(budget / 4);
+    }
+
+    /**
+     * Store a freshly read entry.
+     *
+     * @param name  The name of the entry.
+     * @param bytes The bytes of the entry. These must not be modified after being stored.
+     * @return The content.
+     */
+    public FileData.Content store(String name, byte[] bytes) {
+        long current;
+        do {
+            current = resident.get();
+            if (current + bytes.length > residentBudget) return reread(name, bytes);
+        } while (!resident.compareAndSet(current, current + bytes.length));
+        return FileData.Content.of(bytes);
+    }
+
+    private FileData.Content reread(String name, byte[] bytes) {
+        FileData.Content content = reader.reread(name, bytes.length);
+        // Just read, and about to be used.
+        hot.put(name, bytes);
+        return new FileData.Content() {
+            @Override
+            public byte[] get() {
+                byte[] bytes = hot.get(name);
+                if (bytes != null) return bytes;
+
+                return hot.put(name, content.get());
+            }
+
+            @Override
+            public int size() {
+                return content.size();
+            }
+        };
+    }
+}
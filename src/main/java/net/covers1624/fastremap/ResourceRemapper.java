@@ -0,0 +1,277 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remaps class names inside text resources, such as {@code META-INF/services} files and configs.
+ * <p>
+ * All class names are compiled once into an Aho-Corasick automaton, resources are then scanned in
+ * a single linear pass over their raw bytes, without decoding. Names are matched in both internal
+ * ({@code a/b/C}) and binary ({@code a.b.C}) form, and are only replaced when they are not part of
+ * a longer name, so short obfuscated names such as {@code a} don't match inside words.
+ * <p>
+ * Relocation prefixes are matched as patterns too, as names under them are relocated whether
+ * they are mapped or not. A prefix match takes the rest of the name, which is then mapped and
+ * relocated the same as {@link ASMRemapper#map}.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ResourceRemapper {
+
+    private static final byte[] NO_KEYS = new byte[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root = new Node(0);
+    private final Map<String, String> classes;
+    private final Relocator relocator;
+    // The mapped and relocated name of each pattern, null for relocation prefixes.
+    private final byte[][] mapped;
+
+    /**
+     * @param classes Internal class names to their mapped names.
+     */
+    ResourceRemapper(Map<String, String> classes) {
+        this(classes, Relocator.NONE);
+    }
+
+    /**
+     * @param classes   Internal class names to their mapped names.
+     * @param relocator The relocations, applied to the mapped names.
+     */
+    ResourceRemapper(Map<String, String> classes, Relocator relocator) {
+        this.classes = classes;
+        this.relocator = relocator;
+        List<String> prefixes = relocator.getPrefixes();
+        mapped = new byte[prefixes.size() + classes.size()][];
+        int idx = 0;
+        for (String prefix : prefixes) {
+            Node node = add(prefix);
+            if (node.pattern != -1) continue;
+            node.pattern = idx++;
+        }
+        for (Map.Entry<String, String> entry : classes.entrySet()) {
+            String target = relocate(entry.getValue());
+            if (entry.getKey().equals(target)) continue;
+
+            Node node = add(entry.getKey());
+            // Relocation prefixes take priority, they look the name up themselves.
+            if (node.pattern != -1) continue;
+            node.pattern = idx;
+            mapped[idx++] = target.getBytes(StandardCharsets.UTF_8);
+        }
+        buildLinks();
+    }
+
+    static ResourceRemapper of(MappingLookup mappings, Relocator relocator) {
+        Map<String, String> classes = new LinkedHashMap<>();
+        mappings.forEachClass(classes::put);
+        return new ResourceRemapper(classes, relocator);
+    }
+
+    private Node add(String name) {
+        Node node = root;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            node = node.getOrAdd(normalize(b));
+        }
+        return node;
+    }
+
+    private String relocate(String cName) {
+        return relocator.isEmpty() ? cName : relocator.relocate(cName);
+    }
+
+    private void buildLinks() {
+        // Breadth first, so each node's fail link target is complete before its children need it.
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        for (Node child : root.children) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.output = node.fail.pattern != -1 ? node.fail : node.fail.output;
+            for (int i = 0; i < node.keys.length; i++) {
+                byte key = node.keys[i];
+                Node child = node.children[i];
+                Node fail = node.fail;
+                while (fail != root && fail.get(key) == null) {
+                    fail = fail.fail;
+                }
+                Node next = fail.get(key);
+                child.fail = next != null ? next : root;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Remap all class names in the given resource.
+     *
+     * @param data The resource.
+     * @return The remapped resource. The same array if nothing was remapped.
+     */
+    public byte[] remap(byte[] data) {
+        ByteArrayOutputStream out = null;
+        int copied = 0;
+        Node node = root;
+        for (int i = 0; i < data.length; i++) {
+            byte b = normalize(data[i]);
+            Node next;
+            while ((next = node.get(b)) == null && node != root) {
+                node = node.fail;
+            }
+            node = next != null ? next : root;
+
+            Node match = node.pattern != -1 ? node : node.output;
+            for (; match != null; match = match.output) {
+                int start = i - match.depth + 1;
+                if (!isBoundaryBefore(data, start)) continue;
+
+                byte[] target = mapped[match.pattern];
+                int end = i + 1;
+                int keep = 0;
+                if (target == null) {
+                    end = findNameEnd(data, end);
+                    String name = new String(data, start, end - start, StandardCharsets.UTF_8).replace('.', '/');
+                    String cName = classes.get(name);
+                    String relocated = relocate(cName != null ? cName : name);
+                    if (relocated.equals(name)) continue;
+
+                    // Relocation only replaces a prefix, keep the rest of an unmapped name as written.
+                    if (cName == null) {
+                        keep = commonSuffix(name, relocated);
+                    }
+                    target = relocated.substring(0, relocated.length() - keep).getBytes(StandardCharsets.UTF_8);
+                } else if (!isBoundaryAfter(data, end)) {
+                    continue;
+                }
+
+                if (out == null) {
+                    out = new ByteArrayOutputStream(data.length + 64);
+                }
+                out.write(data, copied, start - copied);
+                writeMapped(out, target, data, start, end);
+                out.write(data, end - keep, keep);
+                copied = end;
+                i = end - 1;
+                // Names can't overlap, restart from the root.
+                node = root;
+                break;
+            }
+        }
+        if (out == null) return data;
+
+        out.write(data, copied, data.length - copied);
+        return out.toByteArray();
+    }
+
+    private static void writeMapped(ByteArrayOutputStream out, byte[] mapped, byte[] data, int start, int end) {
+        // Keep the separator style of the match. Names without a separator are most likely binary names,
+        // as found in services files and manifests.
+        for (int i = start; i < end; i++) {
+            if (data[i] == '/') {
+                out.write(mapped, 0, mapped.length);
+                return;
+            }
+        }
+        for (byte b : mapped) {
+            out.write(b == '/' ? '.' : b);
+        }
+    }
+
+    // The end of the name starting before idx. A '.' only continues the name when followed by more of it.
+    private static int findNameEnd(byte[] data, int idx) {
+        while (idx < data.length) {
+            byte b = data[idx];
+            if (isNamePart(b) || ((b == '.' || b == '/') && idx + 1 < data.length && isNamePart(data[idx + 1]))) {
+                idx++;
+            } else {
+                break;
+            }
+        }
+        return idx;
+    }
+
+    private static int commonSuffix(String a, String b) {
+        int len = 0;
+        int max = Math.min(a.length(), b.length());
+        while (len < max && a.charAt(a.length() - 1 - len) == b.charAt(b.length() - 1 - len)) {
+            len++;
+        }
+        return len;
+    }
+
+    // Both separators are stored as '/' in the automaton.
+    private static byte normalize(byte b) {
+        return b == '.' ? (byte) '/' : b;
+    }
+
+    private static boolean isNamePart(byte b) {
+        // Any non-ascii byte may be part of a UTF-8 encoded identifier.
+        return b < 0 || b == '$' || b == '_' || (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isBoundaryBefore(byte[] data, int idx) {
+        if (idx == 0) return true;
+        byte b = data[idx - 1];
+        return !isNamePart(b) && b != '.' && b != '/';
+    }
+
+    private static boolean isBoundaryAfter(byte[] data, int idx) {
+        if (idx == data.length) return true;
+        byte b = data[idx];
+        // A '.' followed by a name continues the name, otherwise it may end a sentence.
+        if (b == '.') return idx + 1 == data.length || !isNamePart(data[idx + 1]);
+        return !isNamePart(b) && b != '/';
+    }
+
+    private static final class Node {
+
+        // Children, keys are kept sorted for binary search.
+        private byte[] keys = NO_KEYS;
+        private Node[] children = NO_NODES;
+
+        private final int depth;
+        private int pattern = -1;
+        private @Nullable Node fail;
+        // The next node along the fail chain which ends a pattern.
+        private @Nullable Node output;
+
+        private Node(int depth) {
+            this.depth = depth;
+        }
+
+        private @Nullable Node get(byte b) {
+            int idx = Arrays.binarySearch(keys, b);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        private Node getOrAdd(byte b) {
+            int idx = Arrays.binarySearch(keys, b);
+            if (idx >= 0) return children[idx];
+
+            idx = -idx - 1;
+            Node node = new Node(depth + 1);
+            byte[] newKeys = new byte[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newKeys[idx] = b;
+            newChildren[idx] = node;
+            System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A content-addressed cache of whole remap results, shared between processes.
+ * <p>
+ * Entries are keyed by a hash of everything which affects the output, see {@link KeyBuilder}.
+ * The last modified time of an entry is bumped on every hit, once the cache grows past its
+ * size budget the least recently used entries are evicted.
+ * <p>
+ * Entries are written to a temp file and atomically moved into place, so readers never see
+ * a partial entry. Restores and evictions hold an exclusive lock on the cache's lock file,
+ * so an entry can't be evicted while another process is copying it out. Temp files left behind
+ * by a process which died mid-store are deleted when evicting.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ResultCache {
+
+    private static final String SUFFIX = ".jar";
+    private static final String LOCK_FILE = ".lock";
+    private static final String TMP_SUFFIX = ".tmp";
+    // Temp files are written outside the lock, so may belong to a store in progress. One this old was
+    // left behind by a process which died mid-copy.
+    private static final long STALE_TMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // File locks are held per-process, threads within this process must also exclude each other.
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final Path dir;
+    private final long maxSize;
+
+    ResultCache(Path dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Copy the cached result for the given key to the output.
+     *
+     * @param key    The key.
+     * @param output The output file.
+     * @return If the result was cached.
+     */
+    public boolean restore(String key, Path output) throws IOException {
+        Path entry = dir.resolve(key + SUFFIX);
+        synchronized (PROCESS_LOCK) {
+            FileChannel lock = lock();
+            try {
+                if (!Files.isRegularFile(entry)) return false;
+
+                // Copied rather than hard linked, as the output may be modified in place later.
+                Files.copy(entry, output, StandardCopyOption.REPLACE_EXISTING);
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Store a result in the cache, then evict old entries if the cache is over budget.
+     *
+     * @param key    The key.
+     * @param output The result to store.
+     */
+    public void store(String key, Path output) throws IOException {
+        Files.createDirectories(dir);
+        Path entry = dir.resolve(key + SUFFIX);
+        // Copied outside the lock, the move into place is atomic.
+        Path tmp = Files.createTempFile(dir, key, TMP_SUFFIX);
+        try {
+            Files.copy(output, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        evict();
+    }
+
+    private void evict() throws IOException {
+        synchronized (PROCESS_LOCK) {
+            FileChannel lock = lock();
+            try {
+                List<CacheEntry> entries = new ArrayList<>();
+                long size = 0;
+                long staleBefore = System.currentTimeMillis() - STALE_TMP_MILLIS;
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        String fName = file.getFileName().toString();
+                        if (fName.endsWith(TMP_SUFFIX)) {
+                            if (Files.getLastModifiedTime(file).toMillis() < staleBefore) {
+                                Files.deleteIfExists(file);
+                            }
+                            continue;
+                        }
+                        if (!fName.endsWith(SUFFIX)) continue;
+
+                        CacheEntry entry = new CacheEntry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                        entries.add(entry);
+                        size += entry.size();
+                    }
+                }
+                if (size <= maxSize) return;
+
+                entries.sort(Comparator.comparingLong(CacheEntry::lastUsed));
+                for (CacheEntry entry : entries) {
+                    if (size <= maxSize) break;
+                    Files.deleteIfExists(entry.path());
+                    size -= entry.size();
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    // Closing the returned channel releases the lock.
+    private FileChannel lock() throws IOException {
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), CREATE, WRITE);
+        try {
+            channel.lock();
+        } catch (Throwable ex) {
+            channel.close();
+            throw ex;
+        }
+        return channel;
+    }
+
+    private record CacheEntry(Path path, long size, long lastUsed) { }
+
+    /**
+     * Builds a cache key, by hashing everything which affects the output.
+     */
+    static final class KeyBuilder {
+
+        private final MessageDigest digest = Hashing.newSha256();
+
+        public KeyBuilder add(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            add(bytes.length);
+            digest.update(bytes);
+            return this;
+        }
+
+        public KeyBuilder add(boolean bool) {
+            digest.update((byte) (bool ? 1 : 0));
+            return this;
+        }
+
+        public KeyBuilder add(@Nullable Object obj) {
+            return add(String.valueOf(obj));
+        }
+
+        public KeyBuilder add(long value) {
+            for (int i = 0; i < 8; i++) {
+                digest.update((byte) (value >>> (i * 8)));
+            }
+            return this;
+        }
+
+        public KeyBuilder addFile(Path file) throws IOException {
+            add(Files.size(file));
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream is = Files.newInputStream(file)) {
+                int len;
+                while ((len = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, len);
+                }
+            }
+            return this;
+        }
+
+        public String build() {
+            return Hashing.toHex(digest.digest());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package net.covers1624.fastremap;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Holds file contents on the heap up to a fixed budget, anything past that
+ * is spilled to a temporary file and read back on demand.
+ * <p>
+ * A small {@link HotCache} of recently read spilled entries is kept.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class SpillStore implements Closeable {
+
+    private final long residentBudget;
+    private final Path spillFile;
+    private final FileChannel channel;
+    private final HotCache<Spilled> hot;
+
+    private long resident;
+    private long spillPos;
+    private int spillCount;
+
+    /**
+     * @param budget The total number of bytes this store may keep on the heap.
+     */
+    SpillStore(long budget) throws IOException {
+        // Most of the budget is for entries which are never evicted, the remainder is for hot spilled entries.
+        residentBudget = budget - budget / 4;
+        hot = new HotCache<>(budget / 4);
+        spillFile = Files.createTempFile("fastremap", ".spill");
+        channel = FileChannel.open(spillFile, READ, WRITE, DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Store the given bytes.
+     *
+     * @param bytes The bytes. These must not be modified after being stored.
+     * @return The content handle.
+     */
+    public FileData.Content store(byte[] bytes) throws IOException {
+        if (resident + bytes.length <= residentBudget) {
+            resident += bytes.length;
+            return FileData.Content.of(bytes);
+        }
+
+        long pos = spillPos;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+        spillPos = pos;
+        spillCount++;
+        return new Spilled(spillPos - bytes.length, bytes.length);
+    }
+
+    /**
+     * @return The number of entries which have been spilled to disk.
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * @return The number of bytes which have been spilled to disk.
+     */
+    public long getSpillSize() {
+        return spillPos;
+    }
+
+    private byte[] read(Spilled spilled) {
+        byte[] bytes = hot.get(spilled);
+        if (bytes != null) return bytes;
+
+        // Positional reads are thread-safe, two threads reading the same entry is harmless.
+        bytes = new byte[spilled.size];
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        try {
+            long pos = spilled.pos;
+            while (buf.hasRemaining()) {
+                int len = channel.read(buf, pos);
+                if (len == -1) throw new EOFException("Spill file truncated.");
+                pos += len;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read spilled entry from " + spillFile, ex);
+        }
+        return hot.put(spilled, bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        hot.clear();
+        channel.close();
+    }
+
+    private final class Spilled implements FileData.Content {
+
+        private final long pos;
+        private final int size;
+
+        private Spilled(long pos, int size) {
+            this.pos = pos;
+            this.size = size;
+        }
+
+        @Override
+        public byte[] get() {
+            return read(this);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -18,7 +18,7 @@ import static org.objectweb.asm.Opcodes.*;
  */
 public final class StrippedCtorFixer extends ClassVisitor {
 
-    private final FastRemapper fastRemapper;
+    private final RemapInput input;
     @Nullable
     private final ASMRemapper remapper;
     private final FileData.ClassFileData data;
@@ -27,9 +27,9 @@ public final class StrippedCtorFixer extends ClassVisitor {
     private final boolean ctorNeeded;
     private boolean hasInserted = false;
 
-    public StrippedCtorFixer(ClassVisitor classVisitor, FastRemapper fastRemapper, @Nullable ASMRemapper remapper, FileData.ClassFileData data) {
+    public StrippedCtorFixer(ClassVisitor classVisitor, RemapInput input, @Nullable ASMRemapper remapper, FileData.ClassFileData data) {
         super(ASM9, classVisitor);
-        this.fastRemapper = fastRemapper;
+        this.input = input;
         this.remapper = remapper;
         this.data = data;
 
@@ -66,7 +66,7 @@ public final class StrippedCtorFixer extends ClassVisitor {
         Type[] fieldTypes = FastStream.of(finalFields)
                 .map(FieldData::desc)
                 .toArray(new Type[0]);
-        Type[] superParams = fastRemapper.getCtorParams(data.superType());
+        Type[] superParams = input.getCtorParams(data.superType());
 
         Type[] params = new Type[superParams.length + fieldTypes.length];
         System.arraycopy(superParams, 0, params, 0, superParams.length);
@@ -117,10 +117,15 @@ public final class StrippedCtorFixer extends ClassVisitor {
         }
 
         // We don't have frame computation or max computation turned on for speed.
-        int maxStack = Math.max(
-                1 + superParams.length,        // Max locals is this + all params for super ctor call.
-                !finalFields.isEmpty() ? 2 : 1 // Max stack is either 1 when no fields, or 2 when fields are present.
-        );
+        // The super ctor call needs this + all its params, each field store needs this + the value.
+        // Sized in slots, longs and doubles take two.
+        int maxStack = 1;
+        for (Type pType : superParams) {
+            maxStack += pType.getSize();
+        }
+        for (var fNode : finalFields) {
+            maxStack = Math.max(maxStack, 1 + fNode.desc().getSize());
+        }
         mv.visitMaxs(maxStack, localIdx);
         mv.visitEnd();
     }
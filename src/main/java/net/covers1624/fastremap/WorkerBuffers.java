@@ -0,0 +1,85 @@
+package net.covers1624.fastremap;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread buffers, {@link Deflater}, {@link Inflater} and SHA-256 digest, reused across every entry a thread processes.
+ * <p>
+ * Creating these per entry churns the young generation, and the native zlib state behind each
+ * {@link Deflater} and {@link Inflater} is comparatively expensive to set up and is only freed by a cleaner.
+ * <p>
+ * Nothing here may be held across entries, or handed to another thread.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class WorkerBuffers {
+
+    private static final int DEFAULT_SIZE = 64 * 1024;
+    // Buffers grown past this are dropped on next use, rather than pinned for the life of the thread.
+    private static final int MAX_RETAINED = 1024 * 1024;
+
+    private static final ThreadLocal<WorkerBuffers> BUFFERS = ThreadLocal.withInitial(WorkerBuffers::new);
+
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final Inflater inflater = new Inflater(true);
+    private final MessageDigest sha256 = Hashing.newSha256();
+    /**
+     * Scratch space for reading compressed input.
+     */
+    final byte[] input = new byte[DEFAULT_SIZE];
+    private byte[] deflated = new byte[DEFAULT_SIZE];
+
+    private WorkerBuffers() {
+    }
+
+    /**
+     * @return The buffers for the current thread.
+     */
+    public static WorkerBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Raw deflate the given data into {@link #deflated()}.
+     *
+     * @param data The uncompressed data.
+     * @return The compressed length.
+     */
+    public int deflate(byte[] data) {
+        byte[] buf = deflated.length > MAX_RETAINED ? new byte[DEFAULT_SIZE] : deflated;
+        int len = 0;
+        deflater.setInput(data);
+        deflater.finish();
+        try {
+            while (!deflater.finished()) {
+                if (len == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                len += deflater.deflate(buf, len, buf.length - len);
+            }
+        } finally {
+            deflater.reset();
+            deflated = buf;
+        }
+        return len;
+    }
+
+    /**
+     * @param data The data.
+     * @return The hex SHA-256 of the data.
+     */
+    public String sha256(byte[] data) {
+        // Resets the digest.
+        return Hashing.toHex(sha256.digest(data));
+    }
+
+    /**
+     * @return The output of the last {@link #deflate} call, valid until the next.
+     */
+    public byte[] deflated() {
+        return deflated;
+    }
+}
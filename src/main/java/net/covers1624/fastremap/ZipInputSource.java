@@ -0,0 +1,104 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link InputSource} backed by a {@link ZipReader}.
+ * <p>
+ * These allow random access to their entries, so {@link FastRemapper} can load
+ * entries on demand, instead of reading everything up front.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ZipInputSource implements EntryReader.Source {
+
+    private final Opener opener;
+
+    ZipInputSource(Opener opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public EntryReader open() throws IOException {
+        return new Reader(opener.open());
+    }
+
+    @Override
+    public void read(EntryConsumer consumer) throws IOException {
+        try (ZipReader reader = opener.open()) {
+            for (ZipReader.Entry entry : reader.getEntries()) {
+                consumer.accept(entry.name(), reader.read(entry));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Opener {
+
+        ZipReader open() throws IOException;
+    }
+
+    private static final class Reader implements EntryReader {
+
+        private final ZipReader zip;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, ZipReader.Entry> index = new HashMap<>();
+
+        private Reader(ZipReader zip) {
+            this.zip = zip;
+            // Duplicated names keep the position of their first entry, but the content of their last.
+            for (ZipReader.Entry entry : zip.getEntries()) {
+                if (index.put(entry.name(), entry) == null) {
+                    names.add(entry.name());
+                }
+            }
+        }
+
+        @Override
+        public List<String> getNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        @Override
+        public byte @Nullable [] read(String name) throws IOException {
+            ZipReader.Entry entry = index.get(name);
+            return entry != null ? zip.read(entry) : null;
+        }
+
+        @Override
+        public FileData.Content reread(String name, int size) {
+            ZipReader.Entry entry = index.get(name);
+            if (entry == null) throw new IllegalArgumentException("Entry does not exist: " + name);
+            return new ZipContent(zip, entry);
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    private record ZipContent(ZipReader zip, ZipReader.Entry entry) implements FileData.Content {
+
+        @Override
+        public byte[] get() {
+            try {
+                return zip.read(entry);
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to read entry " + entry.name(), ex);
+            }
+        }
+
+        @Override
+        public int size() {
+            return (int) entry.size();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * An {@link OutputSink} which writes a zip via {@link ZipWriter}.
+ * <p>
+ * Entries may be deflated ahead of time on other threads, see {@link ZipWriter#deflate}.
+ * <p>
+ * Every output ends with a {@link #HASH_LIST} of the SHA-256 of each entry. Pre-deflated
+ * entries are hashed by the thread which deflated them, see {@link ZipWriter#deflate}.
+ * <p>
+ * When given a baseline, this writes a delta against it. Only entries whose hash differs from
+ * the baseline's {@link #HASH_LIST} are written, followed by a {@link #REMOVED_LIST} of baseline
+ * entries which were not written at all. Baselines without a hash list, written by older
+ * versions, are compared by CRC-32 and size instead, which is not collision resistant.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ZipOutputSink implements OutputSink {
+
+    /**
+     * The entry listing removed entries in a delta zip, one name per line.
+     */
+    public static final String REMOVED_LIST = "META-INF/fastremap/removed.txt";
+    /**
+     * The entry listing the SHA-256 of every other entry, one {@code <hex> <name>} per line.
+     */
+    public static final String HASH_LIST = "META-INF/fastremap/hashes";
+
+    private final ZipWriter writer;
+    private final Set<String> names = new HashSet<>();
+    private final StringBuilder hashes = new StringBuilder();
+    private final @Nullable Map<String, ZipReader.Entry> baseline;
+    private final @Nullable Map<String, String> baselineHashes;
+
+    private int unchanged;
+    private int removed;
+
+    ZipOutputSink(OutputStream os) {
+        this(os, null);
+    }
+
+    /**
+     * @param os       The stream to write to.
+     * @param baseline The entries of a previous output, to write a delta against.
+     */
+    ZipOutputSink(OutputStream os, @Nullable Map<String, ZipReader.Entry> baseline) {
+        this(os, baseline, null);
+    }
+
+    /**
+     * @param os             The stream to write to.
+     * @param baseline       The entries of a previous output, to write a delta against.
+     * @param baselineHashes The {@link #HASH_LIST} of the previous output, see {@link #readHashes}.
+     *                       Null if it has none, entries are then compared by CRC-32 and size.
+     */
+    ZipOutputSink(OutputStream os, @Nullable Map<String, ZipReader.Entry> baseline, @Nullable Map<String, String> baselineHashes) {
+        writer = new ZipWriter(os);
+        this.baseline = baseline;
+        this.baselineHashes = baselineHashes;
+    }
+
+    /**
+     * Parse a {@link #HASH_LIST}.
+     *
+     * @param data The hash list.
+     * @return The entry names, to their hex SHA-256.
+     */
+    public static Map<String, String> readHashes(byte[] data) {
+        Map<String, String> hashes = new HashMap<>();
+        for (String line : new String(data, StandardCharsets.UTF_8).split("\n")) {
+            int idx = line.indexOf(' ');
+            if (idx <= 0) continue;
+
+            hashes.put(line.substring(idx + 1), line.substring(0, idx));
+        }
+        return hashes;
+    }
+
+    @Override
+    public void write(String name, byte[] data) throws IOException {
+        // Regenerated on close, a previous output may be remapped again.
+        if (name.equals(HASH_LIST)) return;
+
+        checkDuplicate(name);
+        long crc = ZipWriter.crc32(data);
+        if (isUnchanged(name, crc, WorkerBuffers.get().sha256(data), data.length)) return;
+
+        writer.putEntry(name, data, crc, ZipWriter.DOS_EPOCH);
+    }
+
+    /**
+     * Write an entry which has already been deflated.
+     *
+     * @param deflated The entry.
+     */
+    public void write(ZipWriter.Deflated deflated) throws IOException {
+        if (deflated.name().equals(HASH_LIST)) return;
+
+        checkDuplicate(deflated.name());
+        if (isUnchanged(deflated.name(), deflated.crc(), deflated.sha256(), deflated.size())) return;
+
+        writer.putDeflated(deflated, ZipWriter.DOS_EPOCH);
+    }
+
+    private void checkDuplicate(String name) throws ZipException {
+        if (!names.add(name)) throw new ZipException("duplicate entry: " + name);
+    }
+
+    // Also records the entry's hash, unchanged entries are still part of the complete output.
+    private boolean isUnchanged(String name, long crc, String sha256, long size) {
+        if (!name.equals(REMOVED_LIST)) {
+            hashes.append(sha256).append(' ').append(name).append('\n');
+        }
+        if (baseline == null) return false;
+
+        if (baselineHashes != null) {
+            if (!sha256.equals(baselineHashes.get(name))) return false;
+        } else {
+            ZipReader.Entry previous = baseline.get(name);
+            if (previous == null || previous.crc() != crc || previous.size() != size) return false;
+        }
+
+        unchanged++;
+        return true;
+    }
+
+    /**
+     * @return If entries are compared against the baseline by hash, rather than CRC-32 and size.
+     */
+    public boolean hasBaselineHashes() {
+        return baselineHashes != null;
+    }
+
+    /**
+     * @return The number of entries skipped, as they were unchanged from the baseline.
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return The number of baseline entries which were removed. Only valid once closed.
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (baseline != null && !names.contains(REMOVED_LIST)) {
+            StringBuilder sb = new StringBuilder();
+            for (ZipReader.Entry entry : baseline.values()) {
+                if (entry.isDirectory() || entry.name().equals(REMOVED_LIST) || entry.name().equals(HASH_LIST) || names.contains(entry.name())) continue;
+
+                sb.append(entry.name()).append('\n');
+                removed++;
+            }
+            names.add(REMOVED_LIST);
+            writer.putEntry(REMOVED_LIST, sb.toString().getBytes(StandardCharsets.UTF_8), ZipWriter.DOS_EPOCH);
+        }
+        writer.putEntry(HASH_LIST, hashes.toString().getBytes(StandardCharsets.UTF_8), ZipWriter.DOS_EPOCH);
+        writer.close();
+    }
+}
@@ -0,0 +1,422 @@
+package net.covers1624.fastremap;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A minimal random access zip reader, driven by the central directory.
+ * <p>
+ * Unlike {@link java.util.zip.ZipFile}, this provides access to the raw compressed
+ * data of each entry, so it can be copied to a {@link ZipWriter} without being
+ * inflated and deflated again. All reads are positional, making this safe to use
+ * from multiple threads.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ZipReader implements Closeable {
+
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOC_SIG = 0x07064b50;
+
+    private static final int LOC_HEADER = 30;
+    private static final int CEN_HEADER = 46;
+    private static final int END_HEADER = 22;
+
+    private final Source source;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+
+    private ZipReader(Source source) throws IOException {
+        this.source = source;
+        entries = readCentralDirectory();
+        byName = new HashMap<>(entries.size() * 2);
+        // The last entry wins, as it would when reading every entry into a map.
+        for (Entry entry : entries) {
+            byName.put(entry.name(), entry);
+        }
+    }
+
+    public static ZipReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, READ);
+        try {
+            return new ZipReader(new ChannelSource(channel));
+        } catch (Throwable ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public static ZipReader of(byte[] bytes) throws IOException {
+        return new ZipReader(new ArraySource(bytes));
+    }
+
+    /**
+     * @return All entries, in central directory order.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public @Nullable Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Open a stream to read the uncompressed content of the given entry.
+     *
+     * @param entry The entry.
+     * @return The stream.
+     */
+    public InputStream getInputStream(Entry entry) throws IOException {
+        InputStream raw = getRawInputStream(entry);
+        return switch (entry.method()) {
+            case Entry.STORED -> raw;
+            case Entry.DEFLATED -> new EntryInflaterInputStream(raw, entry.size());
+            default -> throw new ZipException("Unsupported compression method " + entry.method() + " for entry " + entry.name());
+        };
+    }
+
+    /**
+     * Read the full uncompressed content of the given entry.
+     * <p>
+     * Deflated entries are inflated straight into the result, using the thread's {@link WorkerBuffers}.
+     *
+     * @param entry The entry.
+     * @return The bytes.
+     */
+    public byte[] read(Entry entry) throws IOException {
+        if (entry.size() > Integer.MAX_VALUE - 8) throw new ZipException("Entry too large to read into memory: " + entry.name());
+
+        byte[] bytes = new byte[(int) entry.size()];
+        if (entry.method() == Entry.DEFLATED) {
+            inflate(entry, bytes);
+            return bytes;
+        }
+        try (InputStream is = getInputStream(entry)) {
+            int len = is.readNBytes(bytes, 0, bytes.length);
+            if (len != bytes.length) throw new ZipException("Entry " + entry.name() + " is truncated.");
+        }
+        return bytes;
+    }
+
+    private void inflate(Entry entry, byte[] dst) throws IOException {
+        WorkerBuffers buffers = WorkerBuffers.get();
+        Inflater inflater = buffers.inflater;
+        byte[] buf = buffers.input;
+        boolean eof = false;
+        int off = 0;
+        try (InputStream raw = getRawInputStream(entry)) {
+            while (off < dst.length) {
+                if (inflater.finished() || inflater.needsDictionary()) throw new ZipException("Entry " + entry.name() + " is truncated.");
+
+                if (inflater.needsInput()) {
+                    if (eof) throw new EOFException("Unexpected end of ZLIB input stream");
+
+                    int len = raw.read(buf, 0, buf.length);
+                    if (len == -1) {
+                        // Raw inflate requires an extra dummy byte at the end of the input.
+                        buf[0] = 0;
+                        len = 1;
+                        eof = true;
+                    }
+                    inflater.setInput(buf, 0, len);
+                }
+                off += inflater.inflate(dst, off, dst.length - off);
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException("Invalid deflate data for entry " + entry.name() + ": " + ex.getMessage());
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Open a stream to read the raw, possibly compressed, data of the given entry.
+     *
+     * @param entry The entry.
+     * @return The stream.
+     */
+    public InputStream getRawInputStream(Entry entry) throws IOException {
+        if ((entry.flags() & 1) != 0) throw new ZipException("Encrypted entries are not supported: " + entry.name());
+
+        return new RangeInputStream(source, getDataOffset(entry), entry.compressedSize());
+    }
+
+    private long getDataOffset(Entry entry) throws IOException {
+        ByteBuffer buf = source.read(entry.localHeaderOffset(), LOC_HEADER);
+        if (buf.getInt(0) != LOC_SIG) throw new ZipException("Invalid local header for entry " + entry.name());
+
+        int nameLen = Short.toUnsignedInt(buf.getShort(26));
+        int extraLen = Short.toUnsignedInt(buf.getShort(28));
+        return entry.localHeaderOffset() + LOC_HEADER + nameLen + extraLen;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        long size = source.size();
+        if (size < END_HEADER) throw new ZipException("Not a zip file, too small.");
+
+        // Find the end of central directory record, searching backwards over any comment.
+        int tailLen = (int) Math.min(size, END_HEADER + 0xFFFF);
+        ByteBuffer tail = source.read(size - tailLen, tailLen);
+        int endPos = -1;
+        for (int i = tailLen - END_HEADER; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_HEADER + Short.toUnsignedInt(tail.getShort(i + 20)) == tailLen) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos == -1) throw new ZipException("Not a zip file, missing end of central directory.");
+
+        long count = Short.toUnsignedInt(tail.getShort(endPos + 10));
+        long cenSize = Integer.toUnsignedLong(tail.getInt(endPos + 12));
+        long cenOffset = Integer.toUnsignedLong(tail.getInt(endPos + 16));
+
+        // Check for a Zip64 locator directly before the end record.
+        long endOffset = size - tailLen + endPos;
+        if (endOffset >= 20) {
+            ByteBuffer loc = source.read(endOffset - 20, 20);
+            if (loc.getInt(0) == ZIP64_LOC_SIG) {
+                ByteBuffer end64 = source.read(loc.getLong(8), 56);
+                if (end64.getInt(0) != ZIP64_END_SIG) throw new ZipException("Invalid Zip64 end of central directory.");
+                count = end64.getLong(32);
+                cenSize = end64.getLong(40);
+                cenOffset = end64.getLong(48);
+            }
+        }
+        if (cenSize > Integer.MAX_VALUE) throw new ZipException("Central directory too large.");
+
+        ByteBuffer cen = source.read(cenOffset, (int) cenSize);
+        List<Entry> entries = new ArrayList<>((int) Math.min(count, 0xFFFF));
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (cen.getInt(pos) != CEN_SIG) throw new ZipException("Invalid central directory header.");
+
+            int flags = Short.toUnsignedInt(cen.getShort(pos + 8));
+            int method = Short.toUnsignedInt(cen.getShort(pos + 10));
+            int dosTime = cen.getInt(pos + 12);
+            long crc = Integer.toUnsignedLong(cen.getInt(pos + 16));
+            long compressedSize = Integer.toUnsignedLong(cen.getInt(pos + 20));
+            long uncompressedSize = Integer.toUnsignedLong(cen.getInt(pos + 24));
+            int nameLen = Short.toUnsignedInt(cen.getShort(pos + 28));
+            int extraLen = Short.toUnsignedInt(cen.getShort(pos + 30));
+            int commentLen = Short.toUnsignedInt(cen.getShort(pos + 32));
+            long localOffset = Integer.toUnsignedLong(cen.getInt(pos + 42));
+
+            byte[] nameBytes = new byte[nameLen];
+            cen.get(pos + CEN_HEADER, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // Zip64 extended information, only the fields which overflowed are present, in this order.
+            int extraPos = pos + CEN_HEADER + nameLen;
+            int extraEnd = extraPos + extraLen;
+            while (extraPos + 4 <= extraEnd) {
+                int id = Short.toUnsignedInt(cen.getShort(extraPos));
+                int len = Short.toUnsignedInt(cen.getShort(extraPos + 2));
+                if (id == 0x0001) {
+                    int p = extraPos + 4;
+                    if (uncompressedSize == 0xFFFFFFFFL) {
+                        uncompressedSize = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (localOffset == 0xFFFFFFFFL) {
+                        localOffset = cen.getLong(p);
+                    }
+                    break;
+                }
+                extraPos += 4 + len;
+            }
+
+            entries.add(new Entry(name, method, flags, dosTime, crc, compressedSize, uncompressedSize, localOffset));
+            pos += CEN_HEADER + nameLen + extraLen + commentLen;
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * An entry in the central directory.
+     *
+     * @param name               The name of the entry.
+     * @param method             The compression method, either {@link #STORED} or {@link #DEFLATED}.
+     * @param flags              The general purpose bit flags.
+     * @param dosTime            The MS-DOS time in the low 16 bits, and date in the high 16 bits.
+     * @param crc                The CRC-32 of the uncompressed data.
+     * @param compressedSize     The size of the compressed data.
+     * @param size               The size of the uncompressed data.
+     * @param localHeaderOffset  The offset of the local file header.
+     */
+    public record Entry(String name, int method, int flags, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+
+        public static final int STORED = 0;
+        public static final int DEFLATED = 8;
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private interface Source extends Closeable {
+
+        long size() throws IOException;
+
+        /**
+         * Fully read the given range.
+         *
+         * @param pos The position to start reading from.
+         * @param len The number of bytes to read.
+         * @return A little-endian buffer containing the bytes.
+         */
+        default ByteBuffer read(long pos, int len) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+            read(pos, buf);
+            return buf.flip();
+        }
+
+        /**
+         * Read into the given buffer, until it's full.
+         *
+         * @param pos The position to start reading from.
+         * @param dst The buffer.
+         */
+        void read(long pos, ByteBuffer dst) throws IOException;
+    }
+
+    private record ChannelSource(FileChannel channel) implements Source {
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void read(long pos, ByteBuffer dst) throws IOException {
+            while (dst.hasRemaining()) {
+                int len = channel.read(dst, pos);
+                if (len == -1) throw new EOFException();
+                pos += len;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private record ArraySource(byte[] bytes) implements Source {
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public void read(long pos, ByteBuffer dst) throws IOException {
+            if (pos + dst.remaining() > bytes.length) throw new EOFException();
+            dst.put(bytes, (int) pos, dst.remaining());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class RangeInputStream extends InputStream {
+
+        private final Source source;
+        private long pos;
+        private long remaining;
+
+        private RangeInputStream(Source source, long pos, long len) {
+            this.source = source;
+            this.pos = pos;
+            remaining = len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+
+            len = (int) Math.min(len, remaining);
+            source.read(pos, ByteBuffer.wrap(b, off, len));
+            pos += len;
+            remaining -= len;
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            n = Math.max(0, Math.min(n, remaining));
+            pos += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream in, long size) {
+            super(in, new Inflater(true), (int) Math.max(512, Math.min(size, 8192)));
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) throw new EOFException("Unexpected end of ZLIB input stream");
+
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                // Raw inflate requires an extra dummy byte at the end of the input.
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            super.close();
+            inf.end();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package net.covers1624.fastremap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * A minimal zip writer, which in addition to normal deflated entries can copy
+ * raw compressed entries from a {@link ZipReader} without re-compressing them.
+ * <p>
+ * Created by covers1624 on 19/10/26.
+ */
+final class ZipWriter implements Closeable {
+
+    /**
+     * MS-DOS time for 1980-01-01 00:00, the earliest representable time.
+     */
+    public static final int DOS_EPOCH = (1 << 5 | 1) << 16;
+
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int EXT_SIG = 0x08074b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOC_SIG = 0x07064b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+
+    private final OutputStream out;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] deflateBuf = new byte[8192];
+
+    private long written;
+    private boolean inEntry;
+    private boolean closed;
+
+    public ZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Deflate and write the given bytes as a new entry.
+     *
+     * @param name    The name of the entry.
+     * @param data    The uncompressed data.
+     * @param dosTime The MS-DOS time and date of the entry.
+     */
+    public void putEntry(String name, byte[] data, int dosTime) throws IOException {
+        putEntry(name, data, crc32(data), dosTime);
+    }
+
+    /**
+     * Deflate and write the given bytes as a new entry, with a CRC computed ahead of time by {@link #crc32}.
+     *
+     * @param name    The name of the entry.
+     * @param data    The uncompressed data.
+     * @param crc     The CRC-32 of the data.
+     * @param dosTime The MS-DOS time and date of the entry.
+     */
+    public void putEntry(String name, byte[] data, long crc, int dosTime) throws IOException {
+        ensureOpen();
+        WorkerBuffers buffers = WorkerBuffers.get();
+        int len = buffers.deflate(data);
+        // Written straight from the scratch buffer, it's not held past this call.
+        putDeflated(name, crc, data.length, buffers.deflated(), len, dosTime);
+    }
+
+    /**
+     * Write an entry which has already been deflated by {@link #deflate}.
+     *
+     * @param deflated The deflated entry.
+     * @param dosTime  The MS-DOS time and date of the entry.
+     */
+    public void putDeflated(Deflated deflated, int dosTime) throws IOException {
+        putDeflated(deflated.name, deflated.crc, deflated.size, deflated.compressed, deflated.compressedSize, dosTime);
+    }
+
+    private void putDeflated(String name, long crc, int size, byte[] compressed, int compressedSize, int dosTime) throws IOException {
+        ensureOpen();
+        CentralEntry entry = new CentralEntry(name, ZipReader.Entry.DEFLATED, FLAG_UTF8, dosTime, crc, compressedSize, size, written);
+        writeLocalHeader(entry);
+        write(compressed, 0, compressedSize);
+        entries.add(entry);
+    }
+
+    /**
+     * Deflate the given entry ahead of time, so it can be written by {@link #putDeflated}.
+     * <p>
+     * This does not touch any writer state, so may be called from any thread. The thread's
+     * {@link WorkerBuffers} are used, only the exact compressed bytes are copied out. The
+     * SHA-256 of the data is computed here too, so it's also done by the calling thread.
+     *
+     * @param name The name of the entry.
+     * @param data The uncompressed data.
+     * @return The deflated entry.
+     */
+    public static Deflated deflate(String name, byte[] data) {
+        WorkerBuffers buffers = WorkerBuffers.get();
+        int len = buffers.deflate(data);
+        return new Deflated(name, crc32(data), buffers.sha256(data), data.length, Arrays.copyOf(buffers.deflated(), len), len);
+    }
+
+    public static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Start a new deflated entry, the content of which is streamed to the returned {@link OutputStream}.
+     * <p>
+     * The entry is finished when the stream is closed. No other entries may be written until then.
+     *
+     * @param name    The name of the entry.
+     * @param dosTime The MS-DOS time and date of the entry.
+     * @return The stream to write the uncompressed content to.
+     */
+    public OutputStream putNextEntry(String name, int dosTime) throws IOException {
+        ensureOpen();
+        inEntry = true;
+        CentralEntry entry = new CentralEntry(name, ZipReader.Entry.DEFLATED, FLAG_UTF8 | FLAG_DATA_DESCRIPTOR, dosTime, 0, 0, 0, written);
+        writeLocalHeader(entry);
+        return new EntryOutputStream(entry);
+    }
+
+    /**
+     * Copy the given entry from a {@link ZipReader} as-is, without inflating it.
+     *
+     * @param reader The reader to copy from.
+     * @param from   The entry to copy.
+     */
+    public void copyRaw(ZipReader reader, ZipReader.Entry from) throws IOException {
+        ensureOpen();
+        // Sizes are always known up front here, so we never need a data descriptor.
+        int flags = from.flags() & FLAG_UTF8;
+        CentralEntry entry = new CentralEntry(from.name(), from.method(), flags, from.dosTime(), from.crc(), from.compressedSize(), from.size(), written);
+        writeLocalHeader(entry);
+        try (InputStream is = reader.getRawInputStream(from)) {
+            byte[] buf = deflateBuf;
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                write(buf, 0, len);
+            }
+        }
+        entries.add(entry);
+    }
+
+    private void writeLocalHeader(CentralEntry entry) throws IOException {
+        if (entry.compressedSize >= MAX_32 || entry.size >= MAX_32) {
+            throw new ZipException("Entry too large, Zip64 entries are not supported: " + entry.name);
+        }
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        header.clear();
+        header.putInt(LOC_SIG);
+        header.putShort((short) (entry.method == ZipReader.Entry.STORED ? 10 : 20));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        write(header.array(), 0, header.position());
+        write(name, 0, name.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        if (inEntry) throw new IllegalStateException("Entry still open.");
+        closed = true;
+        deflater.end();
+
+        long cenOffset = written;
+        for (CentralEntry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long cenSize = written - cenOffset;
+
+        boolean zip64 = entries.size() >= 0xFFFF || cenOffset >= MAX_32 || cenSize >= MAX_32;
+        if (zip64) {
+            long end64Offset = written;
+            header.clear();
+            header.putInt(ZIP64_END_SIG);
+            header.putLong(44);
+            header.putShort((short) 45);
+            header.putShort((short) 45);
+            header.putInt(0);
+            header.putInt(0);
+            header.putLong(entries.size());
+            header.putLong(entries.size());
+            header.putLong(cenSize);
+            header.putLong(cenOffset);
+            write(header.array(), 0, header.position());
+
+            header.clear();
+            header.putInt(ZIP64_LOC_SIG);
+            header.putInt(0);
+            header.putLong(end64Offset);
+            header.putInt(1);
+            write(header.array(), 0, header.position());
+        }
+
+        header.clear();
+        header.putInt(END_SIG);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) Math.min(entries.size(), 0xFFFF));
+        header.putShort((short) Math.min(entries.size(), 0xFFFF));
+        header.putInt((int) Math.min(cenSize, MAX_32));
+        header.putInt((int) Math.min(cenOffset, MAX_32));
+        header.putShort((short) 0);
+        write(header.array(), 0, header.position());
+        out.close();
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = entry.localHeaderOffset >= MAX_32;
+        header.clear();
+        header.putInt(CEN_SIG);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) (zip64 ? 45 : entry.method == ZipReader.Entry.STORED ? 10 : 20));
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? 12 : 0));
+        header.putShort((short) 0); // Comment
+        header.putShort((short) 0); // Disk
+        header.putShort((short) 0); // Internal attributes
+        header.putInt(0);           // External attributes
+        header.putInt((int) Math.min(entry.localHeaderOffset, MAX_32));
+        write(header.array(), 0, header.position());
+        write(name, 0, name.length);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) 0x0001);
+            header.putShort((short) 8);
+            header.putLong(entry.localHeaderOffset);
+            write(header.array(), 0, header.position());
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        written += len;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Writer closed.");
+        if (inEntry) throw new IllegalStateException("Previous entry still open.");
+    }
+
+    /**
+     * An entry which has been deflated, but not yet written.
+     */
+    public static final class Deflated {
+
+        private final String name;
+        private final long crc;
+        private final String sha256;
+        private final int size;
+        private final byte[] compressed;
+        private final int compressedSize;
+
+        private Deflated(String name, long crc, String sha256, int size, byte[] compressed, int compressedSize) {
+            this.name = name;
+            this.crc = crc;
+            this.sha256 = sha256;
+            this.size = size;
+            this.compressed = compressed;
+            this.compressedSize = compressedSize;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long crc() {
+            return crc;
+        }
+
+        /**
+         * @return The hex SHA-256 of the uncompressed data.
+         */
+        public String sha256() {
+            return sha256;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class CentralEntry {
+
+        private final String name;
+        private final int method;
+        private final int flags;
+        private final int dosTime;
+        private final long localHeaderOffset;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        private CentralEntry(String name, int method, int flags, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.flags = flags;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    private final class EntryOutputStream extends OutputStream {
+
+        private final CentralEntry entry;
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private boolean closed;
+
+        private EntryOutputStream(CentralEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed.");
+            if (len == 0) return;
+
+            crc.update(b, off, len);
+            size += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            int len = deflater.deflate(deflateBuf);
+            if (len > 0) {
+                ZipWriter.this.write(deflateBuf, 0, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            entry.crc = crc.getValue();
+            entry.size = size;
+            entry.compressedSize = deflater.getBytesWritten();
+            deflater.reset();
+            if (entry.compressedSize >= MAX_32 || entry.size >= MAX_32) {
+                throw new ZipException("Entry too large, Zip64 entries are not supported: " + entry.name);
+            }
+
+            header.clear();
+            header.putInt(EXT_SIG);
+            header.putInt((int) entry.crc);
+            header.putInt((int) entry.compressedSize);
+            header.putInt((int) entry.size);
+            ZipWriter.this.write(header.array(), 0, header.position());
+            entries.add(entry);
+            inEntry = false;
+        }
+    }
+}
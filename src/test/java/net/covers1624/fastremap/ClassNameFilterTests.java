@@ -0,0 +1,50 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class ClassNameFilterTests {
+
+    @Test
+    public void testNoFalseNegatives() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            names.add("net/minecraft/Class" + i);
+        }
+        ClassNameFilter filter = new ClassNameFilter(names);
+        for (String name : names) {
+            assertTrue(filter.mightContain(name));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            names.add("a" + i);
+        }
+        ClassNameFilter filter = new ClassNameFilter(names);
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("java/lang/Class" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "False positive rate too high: " + falsePositives);
+    }
+
+    @Test
+    public void testEmpty() {
+        ClassNameFilter filter = new ClassNameFilter(List.of());
+        assertFalse(filter.mightContain("java/lang/Object"));
+        assertFalse(filter.mightContain(""));
+    }
+}
@@ -0,0 +1,75 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class DirectoryIOTests {
+
+    @Test
+    public void testReadsSorted() throws IOException {
+        Path dir = Files.createTempDirectory("input");
+        Files.createDirectories(dir.resolve("b"));
+        Files.writeString(dir.resolve("b/c.txt"), "c");
+        Files.writeString(dir.resolve("a.txt"), "a");
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        InputSource.ofDirectory(dir).read(entries::put);
+        assertEquals(List.of("a.txt", "b/c.txt"), List.copyOf(entries.keySet()));
+        assertEquals("c", new String(entries.get("b/c.txt"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadRejectsEscapes() throws IOException {
+        Path dir = Files.createTempDirectory("input");
+        Files.createDirectories(dir.resolve("inner"));
+        Files.writeString(dir.resolve("outside.txt"), "x");
+
+        try (EntryReader reader = new DirectoryInputSource(dir.resolve("inner")).open()) {
+            assertNull(reader.read("../outside.txt"));
+            assertNull(reader.read("a/../../outside.txt"));
+        }
+    }
+
+    @Test
+    public void testOnlyWritesChanged() throws IOException {
+        Path dir = Files.createTempDirectory("output");
+        DirectoryOutputSink sink = new DirectoryOutputSink(dir, 2);
+        try (sink) {
+            sink.write("a.txt", bytes("a"));
+            sink.write("b/c.txt", bytes("c"));
+        }
+        assertEquals(2, sink.getWritten());
+
+        DirectoryOutputSink second = new DirectoryOutputSink(dir, 2);
+        try (second) {
+            second.write("a.txt", bytes("a"));
+            second.write("b/c.txt", bytes("changed"));
+        }
+        assertEquals(1, second.getWritten());
+        assertEquals(1, second.getUnchanged());
+        assertEquals("changed", Files.readString(dir.resolve("b/c.txt")));
+    }
+
+    @Test
+    public void testRejectsEscapes() throws IOException {
+        try (DirectoryOutputSink sink = new DirectoryOutputSink(Files.createTempDirectory("output"), 1)) {
+            assertThrows(IOException.class, () -> sink.write("../escape.txt", bytes("x")));
+        }
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+}
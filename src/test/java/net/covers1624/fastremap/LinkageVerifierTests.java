@@ -0,0 +1,193 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class LinkageVerifierTests {
+
+    @Test
+    public void testResolves() throws IOException {
+        LinkageVerifier verifier = new LinkageVerifier();
+        verifier.index(classWithField("pkg/Base", "java/lang/Object", new String[] { "pkg/Api" }, "count", "I"));
+        verifier.index(interfaceWithDefault("pkg/Api", "describe"));
+        verifier.index(method("pkg/User", mv -> {
+            // Inherited field and interface default method.
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, "pkg/Sub", "count", "I");
+            mv.visitInsn(POP);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "pkg/Sub", "describe", "()V", false);
+            // JDK.
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false);
+            mv.visitInsn(POP);
+            mv.visitLdcInsn("str");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+            mv.visitInsn(POP);
+            // Arrays only have Object's methods.
+            mv.visitInsn(ICONST_0);
+            mv.visitIntInsn(NEWARRAY, T_INT);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "[I", "clone", "()Ljava/lang/Object;", false);
+            mv.visitInsn(POP);
+            // A library, can't be checked.
+            mv.visitMethodInsn(INVOKESTATIC, "com/lib/Thing", "run", "()V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(2, 3);
+        }));
+        verifier.index(classWithField("pkg/Sub", "pkg/Base", new String[0], "other", "J"));
+
+        LinkageVerifier.Report report = verifier.verify(null);
+        assertEquals(List.of(), report.unresolved());
+        assertEquals(List.of(), report.badMaxs());
+        assertEquals(1, report.skipped());
+        assertTrue(report.isOk());
+    }
+
+    @Test
+    public void testUnresolved() throws IOException {
+        LinkageVerifier verifier = new LinkageVerifier();
+        verifier.index(classWithField("pkg/Base", "java/lang/Object", new String[0], "count", "I"));
+        verifier.index(method("pkg/User", mv -> {
+            // Wrong descriptor.
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, "pkg/Base", "count", "J");
+            mv.visitInsn(POP2);
+            mv.visitMethodInsn(INVOKESTATIC, "pkg/Base", "missing", "()V", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "missing", "()V", false);
+            // Constructors aren't inherited.
+            mv.visitTypeInsn(NEW, "pkg/Base");
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn("str");
+            mv.visitMethodInsn(INVOKESPECIAL, "pkg/Base", "<init>", "(Ljava/lang/String;)V", false);
+            mv.visitInsn(POP);
+            // Lambda implementation method.
+            mv.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;",
+                    new Handle(H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false),
+                    Type.getType("()V"), new Handle(H_INVOKESTATIC, "pkg/User", "lambda$0", "()V", false), Type.getType("()V"));
+            mv.visitInsn(POP);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(3, 3);
+        }));
+
+        LinkageVerifier.Report report = verifier.verify(null);
+        assertFalse(report.isOk());
+        assertEquals(List.of(
+                "pkg/User -> java/lang/String.missing()V",
+                "pkg/User -> pkg/Base.<init>(Ljava/lang/String;)V",
+                "pkg/User -> pkg/Base.count:J",
+                "pkg/User -> pkg/Base.missing()V",
+                "pkg/User -> pkg/User.lambda$0()V"
+        ), report.unresolved());
+    }
+
+    @Test
+    public void testBadMaxs() throws IOException {
+        LinkageVerifier verifier = new LinkageVerifier();
+        verifier.index(method("pkg/User", mv -> {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(POP2);
+            mv.visitVarInsn(LLOAD, 1);
+            mv.visitInsn(POP2);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(1, 1);
+        }));
+
+        LinkageVerifier.Report report = verifier.verify(null);
+        assertEquals(List.of(), report.unresolved());
+        assertEquals(1, report.badMaxs().size());
+        assertTrue(report.badMaxs().get(0).contains("needs at least maxStack=2 maxLocals=3"));
+    }
+
+    @Test
+    public void testStrippedCtorWideParams() throws IOException {
+        byte[] base = classWithCtor("pkg/Base", "(JD)V");
+        // No constructor, and a final field which the fixer adds as a parameter.
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V17, ACC_PUBLIC, "pkg/Sub", null, "pkg/Base", null);
+        cw.visitField(ACC_PUBLIC | ACC_FINAL, "value", "J", null, null).visitEnd();
+        cw.visitEnd();
+        byte[] sub = cw.toByteArray();
+
+        RemapInput input = new RemapInput();
+        input.addEntry("pkg/Base.class", base);
+        input.addEntry("pkg/Sub.class", sub);
+        ClassWriter fixed = new ClassWriter(0);
+        FileData.ClassFileData data = FileData.ClassFileData.create(sub);
+        new ClassReader(sub).accept(new StrippedCtorFixer(fixed, input, new ASMRemapper(input, TestBase.NONE), data), 0);
+
+        LinkageVerifier verifier = new LinkageVerifier();
+        verifier.index(base);
+        verifier.index(fixed.toByteArray());
+        LinkageVerifier.Report report = verifier.verify(null);
+        assertEquals(List.of(), report.unresolved());
+        assertEquals(List.of(), report.badMaxs());
+    }
+
+    private static byte[] classWithCtor(String name, String desc) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_PUBLIC, name, null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", desc, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] classWithField(String name, String superName, String[] interfaces, String field, String desc) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_PUBLIC, name, null, superName, interfaces);
+        cw.visitField(ACC_PUBLIC, field, desc, null, null).visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] interfaceWithDefault(String name, String method) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT, name, null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method, "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // A class with a single instance method test(J)V, maxs are as given.
+    private static byte[] method(String name, Consumer<MethodVisitor> code) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V17, ACC_PUBLIC, name, null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "test", "(J)V", null, null);
+        mv.visitCode();
+        code.accept(mv);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,62 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class MappingChainTests {
+
+    private static final IMappingFile OBF_TO_SRG = IMappingBuilder.create("obf", "srg")
+            .addClass("a", "pkg/C_1_")
+            .field("b", "f_2_").build()
+            .method("()La;", "c", "m_3_").build()
+            .method("()V", "d", "m_4_").build()
+            .build()
+            .build()
+            .getMap("obf", "srg");
+
+    private static final IMappingFile SRG_TO_NAMED = IMappingBuilder.create("srg", "named")
+            .addClass("pkg/C_1_", "pkg/Thing")
+            .field("f_2_", "count").build()
+            .method("()Lpkg/C_1_;", "m_3_", "copy").build()
+            .build()
+            .addClass("lib/Unobf", "lib/Named")
+            .build()
+            .build()
+            .getMap("srg", "named");
+
+    @Test
+    public void testCompose() {
+        IMappingFile chain = MappingChain.compose(List.of(OBF_TO_SRG, SRG_TO_NAMED), MappingChain.MissingPolicy.IDENTITY);
+        IMappingFile.IClass clazz = chain.getClass("a");
+        assertNotNull(clazz);
+        assertEquals("pkg/Thing", clazz.getMapped());
+        assertEquals("count", clazz.getField("b").getMapped());
+        assertEquals("copy", clazz.getMethod("c", "()La;").getMapped());
+        // Missing from the second hop, keeps its srg name.
+        assertEquals("m_4_", clazz.getMethod("d", "()V").getMapped());
+        // Only in the second hop, unchanged by the first.
+        assertEquals("lib/Named", chain.getClass("lib/Unobf").getMapped());
+    }
+
+    @Test
+    public void testDropMissing() {
+        IMappingFile chain = MappingChain.compose(List.of(OBF_TO_SRG, SRG_TO_NAMED), MappingChain.MissingPolicy.DROP);
+        IMappingFile.IClass clazz = chain.getClass("a");
+        assertNotNull(clazz);
+        assertEquals("copy", clazz.getMethod("c", "()La;").getMapped());
+        assertNull(clazz.getMethod("d", "()V"));
+    }
+
+    @Test
+    public void testErrorMissing() {
+        assertThrows(RuntimeException.class, () -> MappingChain.compose(List.of(OBF_TO_SRG, SRG_TO_NAMED), MappingChain.MissingPolicy.ERROR));
+    }
+}
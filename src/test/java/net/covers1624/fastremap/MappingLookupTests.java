@@ -0,0 +1,72 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class MappingLookupTests {
+
+    private static final IMappingFile MAPPINGS = IMappingBuilder.create("obf", "named")
+            .addClass("a", "pkg/Thing")
+            .field("b", "count").descriptor("I").build()
+            .field("e", "owner").descriptor("La;").build()
+            .method("(La;)La;", "c", "copy").build()
+            .method("()V", "d", "reset").build()
+            .build()
+            .addClass("f", "pkg/Other")
+            .method("()V", "d", "close").build()
+            .build()
+            .build()
+            .getMap("obf", "named");
+
+    @Test
+    public void testReversedMatchesReverse() {
+        ASMRemapper lazy = new ASMRemapper(new RemapInput(), MAPPINGS, true);
+        ASMRemapper eager = new ASMRemapper(new RemapInput(), MAPPINGS.reverse());
+
+        for (String cName : new String[] { "pkg/Thing", "pkg/Other", "a", "java/lang/Object" }) {
+            assertEquals(eager.map(cName), lazy.map(cName));
+        }
+        assertEquals("a", lazy.map("pkg/Thing"));
+
+        assertEquals(eager.mapFieldName("pkg/Thing", "count", "I"), lazy.mapFieldName("pkg/Thing", "count", "I"));
+        assertEquals("b", lazy.mapFieldName("pkg/Thing", "count", "I"));
+        assertEquals("e", lazy.mapFieldName("pkg/Thing", "owner", "Lpkg/Thing;"));
+        // Wrong descriptor.
+        assertEquals("count", lazy.mapFieldName("pkg/Thing", "count", "J"));
+
+        assertEquals(eager.mapMethodName("pkg/Thing", "copy", "(Lpkg/Thing;)Lpkg/Thing;"), lazy.mapMethodName("pkg/Thing", "copy", "(Lpkg/Thing;)Lpkg/Thing;"));
+        assertEquals("c", lazy.mapMethodName("pkg/Thing", "copy", "(Lpkg/Thing;)Lpkg/Thing;"));
+        assertEquals("d", lazy.mapMethodName("pkg/Other", "close", "()V"));
+        // Original names are not mapped in reverse.
+        assertEquals("c", lazy.mapMethodName("a", "c", "(La;)La;"));
+
+        assertEquals("d", lazy.mapAnnotationAttributeName("Lpkg/Other;", "close"));
+    }
+
+    @Test
+    public void testForward() {
+        ASMRemapper remapper = new ASMRemapper(new RemapInput(), MAPPINGS, false);
+        assertEquals("pkg/Thing", remapper.map("a"));
+        assertEquals("count", remapper.mapFieldName("a", "b", "I"));
+        assertEquals("copy", remapper.mapMethodName("a", "c", "(La;)La;"));
+        assertEquals("close", remapper.mapAnnotationAttributeName("Lf;", "d"));
+    }
+
+    @Test
+    public void testClassNamesOnly() {
+        ASMRemapper remapper = new ASMRemapper(new RemapInput(), MappingLookup.of(MAPPINGS, false), Relocator.NONE, true);
+        assertEquals("pkg/Thing", remapper.map("a"));
+        assertEquals("Lpkg/Thing;", remapper.mapDesc("La;"));
+        assertEquals("(Lpkg/Thing;)Lpkg/Other;", remapper.mapMethodDesc("(La;)Lf;"));
+        // Members are left as they are.
+        assertEquals("b", remapper.mapFieldName("a", "b", "I"));
+        assertEquals("c", remapper.mapMethodName("a", "c", "(La;)La;"));
+        assertEquals("d", remapper.mapAnnotationAttributeName("Lf;", "d"));
+    }
+}
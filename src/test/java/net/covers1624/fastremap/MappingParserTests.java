@@ -0,0 +1,200 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class MappingParserTests {
+
+    private static final String PROGUARD = """
+            # compiler: R8
+            # pg_map_id: 1234
+            net.minecraft.Thing -> a:
+                # {"fileName":"Thing.java","id":"sourceFile"}
+                int count -> b
+                net.minecraft.Thing[] children -> c
+                java.util.List names -> d
+                1:4:void <init>(net.minecraft.Thing,int) -> <init>
+                5:9:net.minecraft.Thing copy() -> e
+                10:10:void setCount(int) -> a
+                boolean[][] flags(long,java.lang.String[]) -> f
+            net.minecraft.Other -> b:
+                void close() -> a
+                net.minecraft.Thing thing -> b
+            """;
+
+    private static final String TSRG = """
+            a/ net/minecraft/
+            a net/minecraft/Thing
+            \tb count
+            \tc children
+            \te ()La; copy
+            \ta (I)V setCount
+            b net/minecraft/Other
+            \ta ()V close
+            \tb thing
+            """;
+
+    private static final String TINY = """
+            tiny\t2\t0\tofficial\tnamed
+            \tsorted
+            c\ta\tnet/minecraft/Thing
+            \tc\tA thing.
+            \tf\tI\tb\tcount
+            \tf\t[La;\tc\tchildren
+            \tm\t()La;\te\tcopy
+            \t\tc\tCopies the thing.
+            \tm\t(I)V\ta\tsetCount
+            \t\tp\t1\t\tcount
+            c\tb\tnet/minecraft/Other
+            \tm\t()V\ta\tclose
+            \tf\tLa;\tb\tthing
+            """;
+
+    @Test
+    public void testProguard() throws IOException {
+        assertEquivalent(PROGUARD);
+
+        MappingLookup lookup = parse(PROGUARD).lookup(false);
+        assertEquals("e", lookup.mapMethod("net/minecraft/Thing", "copy", "()Lnet/minecraft/Thing;"));
+        assertEquals("f", lookup.mapMethod("net/minecraft/Thing", "flags", "(J[Ljava/lang/String;)[[Z"));
+        assertEquals("c", lookup.mapField("net/minecraft/Thing", "children", "[Lnet/minecraft/Thing;"));
+
+        MappingLookup reversed = parse(PROGUARD).lookup(true);
+        assertEquals("copy", reversed.mapMethod("a", "e", "()La;"));
+        assertEquals("net/minecraft/Other", reversed.mapClass("b"));
+    }
+
+    @Test
+    public void testProguardLineInfo() throws IOException {
+        MappingLookup lookup = parse("""
+                net.minecraft.Thing -> a:
+                    10:10:void setCount(int):20:20 -> a
+                    11:11:void net.minecraft.Other.inlined():30:30 -> a
+                """).lookup(false);
+        assertEquals("a", lookup.mapMethod("net/minecraft/Thing", "setCount", "(I)V"));
+        assertNull(lookup.mapMethodName("net/minecraft/Thing", "net.minecraft.Other.inlined"));
+    }
+
+    @Test
+    public void testTinyMissingName() throws IOException {
+        MappingLookup lookup = parse("tiny\t2\t0\tofficial\tnamed\nc\ta\t\n\tm\t(J)V\tg\t\n").lookup(false);
+        assertEquals("a", lookup.mapClass("a"));
+        assertEquals("g", lookup.mapMethod("a", "g", "(J)V"));
+    }
+
+    @Test
+    public void testTsrg() throws IOException {
+        assertEquivalent(TSRG);
+
+        MappingLookup lookup = parse(TSRG).lookup(true);
+        assertEquals("e", lookup.mapMethod("net/minecraft/Thing", "copy", "()Lnet/minecraft/Thing;"));
+        // No field descriptors, matches any.
+        assertEquals("b", lookup.mapField("net/minecraft/Thing", "count", "J"));
+    }
+
+    @Test
+    public void testTiny() throws IOException {
+        assertEquivalent(TINY);
+
+        MappingLookup lookup = parse(TINY).lookup(false);
+        assertEquals("setCount", lookup.mapMethod("a", "a", "(I)V"));
+        assertEquals("children", lookup.mapField("a", "c", "[La;"));
+        assertNull(lookup.mapField("a", "c", "La;"));
+    }
+
+    @Test
+    public void testUnsupported() throws IOException {
+        assertNull(MappingParser.parse("PK: a net/minecraft\nCL: a net/minecraft/Thing\n", null, 1));
+        assertNull(MappingParser.parse("tsrg2 left right\na net/minecraft/Thing\n", null, 1));
+        assertNull(MappingParser.parse("v1\tofficial\tnamed\nCLASS\ta\tnet/minecraft/Thing\n", null, 1));
+        // CSRG class lines look like TSRG, its member lines don't.
+        assertNull(MappingParser.parse("a net/minecraft/Thing\na b count\n", null, 1));
+    }
+
+    @Test
+    public void testChunked() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("net.minecraft.Class").append(i).append(" -> c").append(i).append(":\n");
+            sb.append("    net.minecraft.Class").append((i + 1) % 20000).append(" next -> a\n");
+            sb.append("    1:2:void run(int,net.minecraft.Class").append(i).append(") -> b\n");
+        }
+        String text = sb.toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ParsedMappings single = parse(text);
+            ParsedMappings chunked = MappingParser.parse(text, executor, 4);
+            assertNotNull(chunked);
+            assertEquals(20000, chunked.getClassCount());
+            assertEquals(classes(single.lookup(false)), classes(chunked.lookup(false)));
+
+            MappingLookup lookup = chunked.lookup(true);
+            for (int i = 0; i < 20000; i++) {
+                assertEquals("next", lookup.mapField("c" + i, "a", "Lc" + (i + 1) % 20000 + ";"));
+                assertEquals("run", lookup.mapMethod("c" + i, "b", "(ILc" + i + ";)V"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquivalent(text);
+    }
+
+    private static ParsedMappings parse(String text) throws IOException {
+        ParsedMappings parsed = MappingParser.parse(text, null, 1);
+        assertNotNull(parsed);
+        return parsed;
+    }
+
+    // Every class and member SrgUtils loads must map the same through the parsed lookups, in both directions.
+    private static void assertEquivalent(String text) throws IOException {
+        IMappingFile expected = IMappingFile.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        ParsedMappings parsed = parse(text);
+
+        for (boolean reversed : new boolean[] { false, true }) {
+            MappingLookup srg = MappingLookup.of(expected, reversed);
+            for (MappingLookup fast : new MappingLookup[] { parsed.lookup(reversed), parsed.lookup(reversed).toStore(null) }) {
+                assertEquivalent(expected, reversed, srg, fast);
+            }
+        }
+    }
+
+    private static void assertEquivalent(IMappingFile expected, boolean reversed, MappingLookup srg, MappingLookup fast) {
+        assertEquals(classes(srg), classes(fast));
+
+        for (IMappingFile.IClass clazz : expected.getClasses()) {
+            String owner = reversed ? clazz.getMapped() : clazz.getOriginal();
+            for (IMappingFile.IField field : clazz.getFields()) {
+                String name = reversed ? field.getMapped() : field.getOriginal();
+                String desc = reversed ? field.getMappedDescriptor() : field.getDescriptor();
+                if (desc == null) desc = "I";
+                assertEquals(srg.mapField(owner, name, desc), fast.mapField(owner, name, desc));
+            }
+            for (IMappingFile.IMethod method : clazz.getMethods()) {
+                String name = reversed ? method.getMapped() : method.getOriginal();
+                String desc = reversed ? method.getMappedDescriptor() : method.getDescriptor();
+                assertEquals(srg.mapMethod(owner, name, desc), fast.mapMethod(owner, name, desc));
+                assertEquals(srg.mapMethodName(owner, name), fast.mapMethodName(owner, name));
+            }
+        }
+    }
+
+    private static Map<String, String> classes(MappingLookup lookup) {
+        Map<String, String> classes = new LinkedHashMap<>();
+        lookup.forEachClass(classes::put);
+        return classes;
+    }
+}
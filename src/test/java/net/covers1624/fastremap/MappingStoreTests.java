@@ -0,0 +1,100 @@
+package net.covers1624.fastremap;
+
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class MappingStoreTests {
+
+    private static final IMappingFile MAPPINGS = IMappingBuilder.create("obf", "named")
+            .addClass("a", "pkg/Thing")
+            .field("b", "count").descriptor("I").build()
+            .field("e", "owner").descriptor("La;").build()
+            .method("(La;)La;", "c", "copy").build()
+            .method("()V", "d", "reset").build()
+            .method("(I)V", "d", "resize").build()
+            .method("()V", "a", "tick").build()
+            .build()
+            .addClass("f", "pkg/Other")
+            .field("x", "flag").build()
+            .method("()V", "d", "close").build()
+            .build()
+            .build()
+            .getMap("obf", "named");
+
+    @Test
+    public void testForward() {
+        MappingStore store = MappingStore.of(MAPPINGS, false, null);
+        assertEquals(2, store.getClassCount());
+        assertEquals(3, store.getFieldCount());
+        assertEquals(5, store.getMethodCount());
+
+        assertEquals("pkg/Thing", store.mapClass("a"));
+        assertNull(store.mapClass("pkg/Thing"));
+        assertEquals("count", store.mapField("a", "b", "I"));
+        assertNull(store.mapField("a", "b", "J"));
+        // No descriptor, matches any.
+        assertEquals("flag", store.mapField("f", "x", "Z"));
+        assertEquals("copy", store.mapMethod("a", "c", "(La;)La;"));
+        // Overloads.
+        assertEquals("reset", store.mapMethod("a", "d", "()V"));
+        assertEquals("resize", store.mapMethod("a", "d", "(I)V"));
+        assertNull(store.mapMethod("a", "d", "(J)V"));
+        assertEquals("tick", store.mapMethod("a", "a", "()V"));
+        // First in file order.
+        assertEquals("reset", store.mapMethodName("a", "d"));
+        assertNull(store.mapMethod("java/lang/Object", "d", "()V"));
+    }
+
+    @Test
+    public void testMatchesLookups() {
+        for (boolean reversed : new boolean[] { false, true }) {
+            MappingLookup expected = MappingLookup.of(MAPPINGS, reversed);
+            MappingStore store = MappingLookup.of(MAPPINGS, reversed).toStore(null);
+            for (IMappingFile.IClass clazz : MAPPINGS.getClasses()) {
+                String owner = reversed ? clazz.getMapped() : clazz.getOriginal();
+                assertEquals(expected.mapClass(owner), store.mapClass(owner));
+                for (IMappingFile.IField field : clazz.getFields()) {
+                    String name = reversed ? field.getMapped() : field.getOriginal();
+                    String desc = reversed ? field.getMappedDescriptor() : field.getDescriptor();
+                    if (desc == null) desc = "I";
+                    assertEquals(expected.mapField(owner, name, desc), store.mapField(owner, name, desc));
+                }
+                for (IMappingFile.IMethod method : clazz.getMethods()) {
+                    String name = reversed ? method.getMapped() : method.getOriginal();
+                    String desc = reversed ? method.getMappedDescriptor() : method.getDescriptor();
+                    assertEquals(expected.mapMethod(owner, name, desc), store.mapMethod(owner, name, desc));
+                    assertEquals(expected.mapMethodName(owner, name), store.mapMethodName(owner, name));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPruned() {
+        MappingStore store = MappingStore.of(MAPPINGS, true, Set.of("pkg/Other"));
+        // Classes are always kept.
+        assertEquals("a", store.mapClass("pkg/Thing"));
+        assertNull(store.mapField("pkg/Thing", "count", "I"));
+        assertEquals("d", store.mapMethod("pkg/Other", "close", "()V"));
+        assertEquals(1, store.getFieldCount());
+    }
+
+    @Test
+    public void testRemapper() {
+        ASMRemapper remapper = new ASMRemapper(new RemapInput(), MappingStore.of(MAPPINGS, false, null), Relocator.NONE);
+        assertEquals("pkg/Thing", remapper.map("a"));
+        assertEquals("count", remapper.mapFieldName("a", "b", "I"));
+        assertEquals("copy", remapper.mapMethodName("a", "c", "(La;)La;"));
+        assertEquals("d", remapper.mapMethodName("b", "d", "()V"));
+        assertEquals("close", remapper.mapAnnotationAttributeName("Lf;", "d"));
+    }
+}
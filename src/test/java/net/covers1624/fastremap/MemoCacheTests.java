@@ -0,0 +1,53 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class MemoCacheTests {
+
+    @Test
+    public void testMemoizes() {
+        MemoCache cache = new MemoCache(16);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("LFoo;", cache.get("La;", e -> {
+                calls.incrementAndGet();
+                return "LFoo;";
+            }));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        MemoCache cache = new MemoCache(2);
+        cache.get("a", e -> "1");
+        cache.get("b", e -> "2");
+        assertEquals(2, cache.size());
+        cache.get("c", e -> "3");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getClears());
+        assertEquals("3", cache.get("c", e -> "x"));
+    }
+
+    @Test
+    public void testStats() {
+        MemoCache a = new MemoCache(4);
+        MemoCache b = new MemoCache(4);
+        assertNull(MemoCache.formatStats(a, b));
+        a.get("a", e -> "1");
+        a.get("a", e -> "1");
+        b.get("b", e -> "2");
+        b.get("b", e -> "2");
+        assertEquals(String.format("%d hits, %d misses (%.1f%% hit ratio), cleared %d times", 2, 2, 50D, 0), MemoCache.formatStats(a, b));
+    }
+}
@@ -0,0 +1,55 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class PrefixMatcherTests {
+
+    @Test
+    public void testLiteralPrefixes() {
+        PrefixMatcher matcher = PrefixMatcher.compile(List.of("com/google/", "org/apache", "some/file.txt"), false);
+        assertTrue(matcher.matches("com/google/common/Foo.class"));
+        assertTrue(matcher.matches("org/apache/Bar.class"));
+        assertTrue(matcher.matches("org/apachelogging/Bar.class"));
+        assertTrue(matcher.matches("some/file.txt"));
+        assertFalse(matcher.matches("com/googlex/Foo.class"));
+        assertFalse(matcher.matches("com/goog"));
+        assertFalse(matcher.matches("net/minecraft/Foo.class"));
+    }
+
+    @Test
+    public void testDotSeparators() {
+        PrefixMatcher matcher = PrefixMatcher.compile(List.of("com.google.", "net.minecraft.Foo"), true);
+        assertTrue(matcher.matches("com/google/common/Foo.class"));
+        assertTrue(matcher.matches("net/minecraft/Foo.class"));
+        assertTrue(matcher.matches("net/minecraft/Foo$Inner.class"));
+        assertFalse(matcher.matches("com/googlex/Foo.class"));
+        assertFalse(matcher.matches("net/minecraft/Bar.class"));
+    }
+
+    @Test
+    public void testGlobs() {
+        PrefixMatcher matcher = PrefixMatcher.compile(List.of("assets/*/lang/", "data/**.json", "a?c/"), false);
+        assertTrue(matcher.matches("assets/minecraft/lang/en_us.json"));
+        assertFalse(matcher.matches("assets/minecraft/textures/lang/en_us.json"));
+        assertTrue(matcher.matches("data/minecraft/recipes/stone.json"));
+        assertTrue(matcher.matches("data/stone.json"));
+        assertFalse(matcher.matches("data/minecraft/recipes/stone.nbt"));
+        assertTrue(matcher.matches("abc/Foo.class"));
+        assertFalse(matcher.matches("a/c/Foo.class"));
+    }
+
+    @Test
+    public void testEmpty() {
+        PrefixMatcher matcher = PrefixMatcher.compile(List.of(), false);
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("anything"));
+    }
+}
@@ -0,0 +1,46 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class RelocatorTests {
+
+    @Test
+    public void testLongestPrefix() {
+        Relocator relocator = new Relocator(Map.of(
+                "com/google/", "shaded/com/google/",
+                "com/google/common/", "shaded/guava/"
+        ));
+        assertEquals("shaded/com/google/gson/Gson", relocator.relocate("com/google/gson/Gson"));
+        assertEquals("shaded/guava/collect/ImmutableList", relocator.relocate("com/google/common/collect/ImmutableList"));
+        assertEquals("com/googlex/Foo", relocator.relocate("com/googlex/Foo"));
+        assertEquals("java/lang/Object", relocator.relocate("java/lang/Object"));
+    }
+
+    @Test
+    public void testDotSeparators() {
+        Relocator relocator = new Relocator(Map.of("org.apache.", "lib.apache."));
+        assertEquals("lib/apache/commons/io/IOUtils", relocator.relocate("org/apache/commons/io/IOUtils"));
+    }
+
+    @Test
+    public void testUnmatchedReturnsSameString() {
+        Relocator relocator = new Relocator(Map.of("com/google/", "shaded/com/google/"));
+        String name = "com/goo";
+        assertSame(name, relocator.relocate(name));
+        assertSame(name, Relocator.NONE.relocate(name));
+    }
+
+    @Test
+    public void testEmptyPrefix() {
+        assertThrows(IllegalArgumentException.class, () -> new Relocator(Map.of("", "shaded/")));
+    }
+}
@@ -0,0 +1,70 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class ResourceRemapperTests {
+
+    private static final ResourceRemapper REMAPPER = new ResourceRemapper(Map.of(
+            "a", "net/minecraft/Thing",
+            "a$b", "net/minecraft/Thing$Inner",
+            "c/d", "net/minecraft/world/Level",
+            "unchanged/Name", "unchanged/Name"
+    ));
+
+    @Test
+    public void testServices() {
+        assertEquals("net.minecraft.Thing\nnet.minecraft.world.Level\n", remap("a\nc.d\n"));
+        assertEquals("net.minecraft.Thing$Inner", remap("a$b"));
+        assertEquals("see net/minecraft/world/Level here", remap("see c/d here"));
+    }
+
+    @Test
+    public void testBoundaries() {
+        // Inside words, paths or longer names.
+        assertEquals("banana ab x.a a/b", remap("banana ab x.a a/b"));
+        assertEquals("{\"class\": \"net.minecraft.world.Level\"}", remap("{\"class\": \"c.d\"}"));
+        // Sentence end.
+        assertEquals("see net.minecraft.Thing.", remap("see a."));
+    }
+
+    @Test
+    public void testNoMatchReturnsSameArray() {
+        byte[] data = "nothing to see here".getBytes(StandardCharsets.UTF_8);
+        assertSame(data, REMAPPER.remap(data));
+    }
+
+    @Test
+    public void testRelocatedServices() {
+        ResourceRemapper remapper = new ResourceRemapper(
+                Map.of(
+                        "a", "com/google/gson/Gson",
+                        "com/google/common/Renamed", "net/minecraft/Renamed"
+                ),
+                new Relocator(Map.of("com/google/", "shaded/com/google/"))
+        );
+        // Mapped into a relocated package, unmapped under a relocated package, and mapped out of it.
+        assertEquals("shaded.com.google.gson.Gson\nshaded.com.google.common.Cache\nnet.minecraft.Renamed\n",
+                remap(remapper, "a\ncom.google.common.Cache\ncom.google.common.Renamed\n"));
+        assertEquals("see shaded/com/google/common/Cache$Entry here", remap(remapper, "see com/google/common/Cache$Entry here"));
+        // The rest of a relocated name is kept as written.
+        assertEquals("shaded/com/google/data.json", remap(remapper, "com/google/data.json"));
+        assertEquals("com.googlex.Foo org.com.google.Foo", remap(remapper, "com.googlex.Foo org.com.google.Foo"));
+    }
+
+    private static String remap(String str) {
+        return remap(REMAPPER, str);
+    }
+
+    private static String remap(ResourceRemapper remapper, String str) {
+        return new String(remapper.remap(str.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class ResultCacheTests {
+
+    @Test
+    public void testStoreRestore() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        ResultCache cache = new ResultCache(dir, 1024);
+        Path output = dir.resolve("output.jar");
+
+        assertFalse(cache.restore("key", output));
+        Files.write(output, new byte[] { 1, 2, 3 });
+        cache.store("key", output);
+
+        Files.delete(output);
+        assertTrue(cache.restore("key", output));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(output));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        ResultCache cache = new ResultCache(dir.resolve("cache"), 25);
+        Path output = dir.resolve("output.jar");
+        Files.write(output, new byte[10]);
+
+        cache.store("a", output);
+        cache.store("b", output);
+        Files.setLastModifiedTime(dir.resolve("cache/a.jar"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(dir.resolve("cache/b.jar"), FileTime.fromMillis(2000));
+        // Bumps a, making b the oldest.
+        assertTrue(cache.restore("a", output));
+
+        cache.store("c", output);
+        assertTrue(Files.exists(dir.resolve("cache/a.jar")));
+        assertFalse(Files.exists(dir.resolve("cache/b.jar")));
+        assertTrue(Files.exists(dir.resolve("cache/c.jar")));
+    }
+
+    @Test
+    public void testDeletesStaleTempFiles() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        ResultCache cache = new ResultCache(dir.resolve("cache"), 1024);
+        Path output = dir.resolve("output.jar");
+        Files.write(output, new byte[10]);
+        Files.createDirectories(dir.resolve("cache"));
+        Path stale = Files.write(dir.resolve("cache/a123.tmp"), new byte[10]);
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(1000));
+        // Possibly another process mid-store.
+        Path fresh = Files.write(dir.resolve("cache/b123.tmp"), new byte[10]);
+
+        cache.store("c", output);
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(dir.resolve("cache/c.jar")));
+    }
+
+    @Test
+    public void testKeys() throws IOException {
+        Path file = Files.createTempFile("input", ".jar");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        String key = new ResultCache.KeyBuilder().add("1.0").addFile(file).build();
+        assertEquals(key, new ResultCache.KeyBuilder().add("1.0").addFile(file).build());
+        assertNotEquals(key, new ResultCache.KeyBuilder().add("1.1").addFile(file).build());
+
+        Files.write(file, new byte[] { 1, 2, 4 });
+        assertNotEquals(key, new ResultCache.KeyBuilder().add("1.0").addFile(file).build());
+    }
+}
@@ -0,0 +1,69 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class StrippedCtorFixerTests {
+
+    @Test
+    public void testWideParamMaxs() throws IOException {
+        // The super constructor takes a long and a double, the stripped field is a long.
+        ClassWriter base = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        base.visit(V17, ACC_PUBLIC, "pkg/Base", null, "java/lang/Object", null);
+        MethodVisitor mv = base.visitMethod(ACC_PUBLIC, "<init>", "(JD)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        base.visitEnd();
+
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V17, ACC_PUBLIC, "pkg/Sub", null, "pkg/Base", null);
+        cw.visitField(ACC_PUBLIC | ACC_FINAL, "value", "J", null, null).visitEnd();
+        cw.visitEnd();
+        byte[] sub = cw.toByteArray();
+
+        RemapInput input = new RemapInput();
+        input.addEntry("pkg/Base.class", base.toByteArray());
+        input.addEntry("pkg/Sub.class", sub);
+        ClassWriter fixed = new ClassWriter(0);
+        new ClassReader(sub).accept(new StrippedCtorFixer(fixed, input, new ASMRemapper(input, TestBase.NONE), FileData.ClassFileData.create(sub)), 0);
+
+        // (JDJ)V: this + 2 + 2 on the stack for the super call, and this + 2 + 2 + 2 locals.
+        int[] maxs = ctorMaxs(fixed.toByteArray(), "(JDJ)V");
+        assertEquals(5, maxs[0]);
+        assertEquals(7, maxs[1]);
+    }
+
+    private static int[] ctorMaxs(byte[] bytes, String desc) {
+        int[] maxs = new int[2];
+        new ClassReader(bytes).accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.equals("<init>") || !descriptor.equals(desc)) return null;
+
+                return new MethodVisitor(ASM9) {
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        maxs[0] = maxStack;
+                        maxs[1] = maxLocals;
+                    }
+                };
+            }
+        }, 0);
+        return maxs;
+    }
+}
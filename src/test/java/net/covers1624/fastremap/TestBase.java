@@ -31,7 +31,7 @@ class TestBase {
         var bytes = getBytes(clazz);
         var data = FileData.ClassFileData.create(bytes);
         ClassReader cr = new ClassReader(data.data());
-        cr.accept(remapper.buildTransformTree(new ASMRemapper(remapper, mappings), cr, new FlagVisitor(new TraceClassVisitor(pw), List.of(flags)), data), 0);
+        cr.accept(remapper.buildTransformTree(new ASMRemapper(new RemapInput(), mappings), cr, new FlagVisitor(new TraceClassVisitor(pw), List.of(flags)), data), 0);
         return sw.toString();
     }
 
@@ -0,0 +1,44 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class ZipInputSourceTests {
+
+    @Test
+    public void testDuplicateEntries() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipWriter writer = new ZipWriter(bos)) {
+            writer.putEntry("a.txt", bytes("first"), ZipWriter.DOS_EPOCH);
+            writer.putEntry("b.txt", bytes("b"), ZipWriter.DOS_EPOCH);
+            writer.putEntry("a.txt", bytes("last"), ZipWriter.DOS_EPOCH);
+        }
+        byte[] zip = bos.toByteArray();
+
+        // The same as reading every entry into a LinkedHashMap.
+        Map<String, byte[]> eager = new LinkedHashMap<>();
+        InputSource.ofZip(zip).read(eager::put);
+        assertEquals(List.of("a.txt", "b.txt"), List.copyOf(eager.keySet()));
+        assertEquals("last", new String(eager.get("a.txt"), StandardCharsets.UTF_8));
+
+        try (EntryReader reader = new ZipInputSource(() -> ZipReader.of(zip)).open()) {
+            assertEquals(List.of("a.txt", "b.txt"), reader.getNames());
+            assertEquals("last", new String(reader.read("a.txt"), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package net.covers1624.fastremap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Created by covers1624 on 19/10/26.
+ */
+public class ZipOutputSinkTests {
+
+    @Test
+    public void testDelta() throws IOException {
+        Map<String, ZipReader.Entry> baseline = new LinkedHashMap<>();
+        baseline.put("same.txt", entry("same.txt", "same"));
+        baseline.put("changed.txt", entry("changed.txt", "before"));
+        baseline.put("removed.txt", entry("removed.txt", "gone"));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputSink sink = new ZipOutputSink(bos, baseline);
+        try (sink) {
+            sink.write("same.txt", bytes("same"));
+            sink.write("changed.txt", bytes("after"));
+            sink.write(ZipWriter.deflate("added.txt", bytes("new")));
+        }
+        assertEquals(1, sink.getUnchanged());
+        assertEquals(1, sink.getRemoved());
+
+        try (ZipReader reader = ZipReader.of(bos.toByteArray())) {
+            List<String> names = reader.getEntries().stream().map(ZipReader.Entry::name).toList();
+            assertEquals(List.of("changed.txt", "added.txt", ZipOutputSink.REMOVED_LIST, ZipOutputSink.HASH_LIST), names);
+            assertEquals("removed.txt\n", new String(reader.read(reader.getEntry(ZipOutputSink.REMOVED_LIST)), StandardCharsets.UTF_8));
+            // Lists the complete output, not just what was written.
+            Map<String, String> hashes = ZipOutputSink.readHashes(reader.read(reader.getEntry(ZipOutputSink.HASH_LIST)));
+            assertEquals(Map.of(
+                    "same.txt", Hashing.sha256(bytes("same")),
+                    "changed.txt", Hashing.sha256(bytes("after")),
+                    "added.txt", Hashing.sha256(bytes("new"))
+            ), hashes);
+        }
+    }
+
+    @Test
+    public void testDeltaByHash() throws IOException {
+        // Same CRC and size as the new content, as if it collided.
+        Map<String, ZipReader.Entry> baseline = new LinkedHashMap<>();
+        baseline.put("collides.txt", entry("collides.txt", "after"));
+        baseline.put("same.txt", entry("same.txt", "same"));
+        Map<String, String> baselineHashes = Map.of(
+                "collides.txt", Hashing.sha256(bytes("older")),
+                "same.txt", Hashing.sha256(bytes("same"))
+        );
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputSink sink = new ZipOutputSink(bos, baseline, baselineHashes);
+        try (sink) {
+            sink.write("collides.txt", bytes("after"));
+            sink.write(ZipWriter.deflate("same.txt", bytes("same")));
+        }
+        assertEquals(1, sink.getUnchanged());
+
+        try (ZipReader reader = ZipReader.of(bos.toByteArray())) {
+            List<String> names = reader.getEntries().stream().map(ZipReader.Entry::name).toList();
+            assertEquals(List.of("collides.txt", ZipOutputSink.REMOVED_LIST, ZipOutputSink.HASH_LIST), names);
+        }
+    }
+
+    @Test
+    public void testLargeEntries() throws IOException {
+        // Incompressible, larger than the reused deflate and inflate buffers.
+        byte[] random = new byte[300 * 1024];
+        new Random(42).nextBytes(random);
+        byte[] empty = new byte[0];
+        byte[] repeated = bytes("repeated ".repeat(50_000));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputSink sink = new ZipOutputSink(bos)) {
+            sink.write("random.bin", random);
+            sink.write(ZipWriter.deflate("empty.bin", empty));
+            sink.write(ZipWriter.deflate("repeated.txt", repeated));
+            sink.write("random2.bin", random);
+        }
+
+        try (ZipReader reader = ZipReader.of(bos.toByteArray())) {
+            assertArrayEquals(random, reader.read(reader.getEntry("random.bin")));
+            assertArrayEquals(empty, reader.read(reader.getEntry("empty.bin")));
+            assertArrayEquals(repeated, reader.read(reader.getEntry("repeated.txt")));
+            assertArrayEquals(random, reader.read(reader.getEntry("random2.bin")));
+        }
+    }
+
+    private static ZipReader.Entry entry(String name, String content) {
+        byte[] data = bytes(content);
+        return new ZipReader.Entry(name, ZipReader.Entry.DEFLATED, 0, ZipWriter.DOS_EPOCH, ZipWriter.crc32(data), 0, data.length, 0);
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+}